@@ -0,0 +1,66 @@
+package ch.patchcode.port_royale_3.map;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.patchcode.port_royale_3.routes.BenchmarkData;
+import ch.patchcode.port_royale_3.routes.DistanceGraph;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Edge;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+/**
+ * A fixed number of {@link WorldMap#rebalanceAll(double, WorldMap.Solver, LayoutBudget)} passes per solver. A pass
+ * costs the same from any layout, so the map is reset to the same random layout only before each iteration, and the
+ * invocations within it continue from where the previous one left off; resetting it per invocation would put the
+ * setup and its timestamps into the measurement of these sub-millisecond calls.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class WorldMapBenchmark {
+
+    private static final int PASSES = 20;
+
+    @Param({ "59", "500", "2000" })
+    public int ports;
+
+    @Param
+    public WorldMap.Solver solver;
+
+    private DistanceGraph graph;
+    private WorldMap<Vertex, Edge> map;
+
+    @Setup
+    public void setup() {
+        graph = new DistanceGraph(BenchmarkData.distances(ports));
+    }
+
+    @Setup(Level.Iteration)
+    public void layout() {
+        map = new WorldMap<>(10., new Random(1L));
+        Vertex center = graph.getCentralVertex();
+        map.addFixed(center, 0, 0);
+        graph.getVertices().stream().sorted().filter(it -> it != center).forEach(map::add);
+    }
+
+    @Benchmark
+    public LayoutResult rebalanceAll() {
+        return map.rebalanceAll(0., solver, LayoutBudget.UNLIMITED.withMaxIterations(PASSES));
+    }
+}
@@ -0,0 +1,52 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Inputs of the benchmarks: the bundled table of the game's 59 ports, or, for any other number of ports, a synthetic
+ * table from the {@link DistanceGenerator}, rounded to one decimal like the game's.
+ */
+public final class BenchmarkData {
+
+    public static final int BUNDLED_PORTS = 59;
+
+    private static final String BUNDLED = "port-royale-3-distances.csv";
+    private static final long SEED = 1L;
+
+    private BenchmarkData() {
+    }
+
+    public static DistanceMatrixData distances(int ports) {
+        if (ports == BUNDLED_PORTS) {
+            try (InputStream is = BenchmarkData.class.getClassLoader().getResourceAsStream(BUNDLED)) {
+                return new DistanceCsvLoader().load(is);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return DistanceGenerator.plane(ports).withSeed(SEED).generate();
+    }
+
+    /** @return the table of {@link #distances(int)} in the lower-triangular CSV format of the bundled table */
+    public static byte[] csv(int ports) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            if (ports == BUNDLED_PORTS) {
+                try (InputStream is = BenchmarkData.class.getClassLoader().getResourceAsStream(BUNDLED)) {
+                    byte[] buffer = new byte[1 << 16];
+                    for (int n; (n = is.read(buffer)) > 0;) {
+                        out.write(buffer, 0, n);
+                    }
+                }
+            } else {
+                DistanceGenerator.plane(ports).withSeed(SEED).writeCsv(out);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parsing of the distance CSV by {@link DistanceCsvData}, whose nested maps do not scale to 10,000 ports, and by the
+ * streaming {@link DistanceCsvLoader}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DistanceCsvBenchmark {
+
+    @Param({ "59", "500", "2000" })
+    public int ports;
+
+    private byte[] csv;
+
+    @Setup
+    public void setup() {
+        csv = BenchmarkData.csv(ports);
+    }
+
+    @Benchmark
+    public DistanceCsvData csvData() {
+        return new DistanceCsvData(new ByteArrayInputStream(csv));
+    }
+
+    @Benchmark
+    public DistanceMatrixData csvLoader() throws IOException {
+        return new DistanceCsvLoader().load(new ByteArrayInputStream(csv));
+    }
+}
@@ -0,0 +1,42 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Parsing of large distance CSVs by {@link DistanceCsvLoader}, up to 10,000 ports. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class DistanceCsvLoaderBenchmark {
+
+    @Param({ "59", "500", "2000", "10000" })
+    public int ports;
+
+    private byte[] csv;
+
+    @Setup
+    public void setup() {
+        csv = BenchmarkData.csv(ports);
+    }
+
+    @Benchmark
+    public DistanceMatrixData load() throws IOException {
+        return new DistanceCsvLoader().load(new ByteArrayInputStream(csv));
+    }
+}
@@ -0,0 +1,81 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.patchcode.graphs.weighted.NeighbourDistanceScore;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Edge;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+/**
+ * Construction of a {@link DistanceGraph}, which materializes all n(n-1)/2 edges, sequentially and on pools of growing
+ * parallelism, and the ranking of its vertices by {@link NeighbourDistanceScore} that picks the central vertex.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class DistanceGraphBenchmark {
+
+    @Param({ "59", "500", "2000" })
+    public int ports;
+
+    private DistanceMatrixData data;
+    private DistanceGraph graph;
+
+    @Setup
+    public void setup() {
+        data = BenchmarkData.distances(ports);
+        graph = new DistanceGraph(data);
+    }
+
+    @Benchmark
+    public DistanceGraph construct() {
+        return new DistanceGraph(data);
+    }
+
+    @Benchmark
+    public DistanceGraph constructInParallel(Pool pool) {
+        return new DistanceGraph(data, pool.pool);
+    }
+
+    @Benchmark
+    public Vertex neighbourDistanceScoreRanking() {
+        return graph.getVertices().stream().map(NeighbourDistanceScore<Vertex, Edge>::new).sorted().findFirst()
+                .get().getVertex();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+
+        @Param({ "1", "2", "4" })
+        public int parallelism;
+
+        private ForkJoinPool pool;
+
+        @Setup
+        public void setup() {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+}
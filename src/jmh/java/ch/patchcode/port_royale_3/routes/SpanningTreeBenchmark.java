@@ -0,0 +1,69 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ch.patchcode.graphs.trees.Tree;
+import ch.patchcode.graphs.weighted.BottomUpBipairingSpanningTree;
+import ch.patchcode.graphs.weighted.GreedyMinimumDistanceSpanningTree;
+import ch.patchcode.graphs.weighted.TopDownBisectionSpanningTree;
+import ch.patchcode.graphs.weighted.TourShortcutOptimizer;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+/** Each spanning tree strategy on its own and followed by the {@link TourShortcutOptimizer}. */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SpanningTreeBenchmark {
+
+    public enum Strategy {
+        GREEDY(GreedyMinimumDistanceSpanningTree::new),
+        TOP_DOWN(TopDownBisectionSpanningTree::new),
+        BOTTOM_UP(BottomUpBipairingSpanningTree::new);
+
+        private final Function<DistanceGraph, Tree<Vertex>> factory;
+
+        Strategy(Function<DistanceGraph, Tree<Vertex>> factory) {
+            this.factory = factory;
+        }
+    }
+
+    @Param({ "59", "500", "2000" })
+    public int ports;
+
+    @Param
+    public Strategy strategy;
+
+    private DistanceGraph graph;
+
+    @Setup
+    public void setup() {
+        graph = new DistanceGraph(BenchmarkData.distances(ports));
+    }
+
+    @Benchmark
+    public Tree<Vertex> spanningTree() {
+        return strategy.factory.apply(graph);
+    }
+
+    @Benchmark
+    public List<Vertex> spanningTreeAndTour() {
+        return graph.createTour(strategy.factory.apply(graph));
+    }
+}
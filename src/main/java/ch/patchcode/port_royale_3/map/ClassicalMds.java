@@ -0,0 +1,236 @@
+package ch.patchcode.port_royale_3.map;
+
+import java.util.Random;
+
+import ch.patchcode.port_royale_3.routes.IndexedDistanceData;
+
+/**
+ * Classical multidimensional scaling into the plane: the coordinates are the two leading eigenvectors of the
+ * double-centred matrix of squared distances {@code B = -1/2 J D² J}, scaled by the square roots of their eigenvalues.
+ * The eigenvectors are found by power iteration on both vectors at once, followed by a Rayleigh-Ritz step. {@code B}
+ * is applied implicitly, so apart from the distances only O(n) memory is needed and each iteration reads every
+ * distance once.
+ * <p>
+ * Distances that are not Euclidean, like the game's rounded ones, give {@code B} negative eigenvalues, and plain power
+ * iteration converges to these if they are the largest in magnitude. If it finds a negative eigenvalue, the iteration
+ * is therefore repeated on {@code B + σI}, with {@code σ} the largest Gershgorin radius of {@code B}, which bounds the
+ * magnitude of every eigenvalue; the shifted matrix has no negative eigenvalues, and its leading eigenvectors are
+ * those of the largest eigenvalues of {@code B}. This converges more slowly, as the shift brings the eigenvalues
+ * closer together relative to their size. Only if {@code B} has fewer than two positive eigenvalues, a coordinate
+ * collapses to 0.
+ */
+public final class ClassicalMds {
+
+    private static final int MAX_ITERATIONS = 1000;
+    private static final double TOLERANCE = 1e-10;
+
+    private ClassicalMds() {
+    }
+
+    /** returns the coordinates of the places of {@code data} as {@code {x, y}}, indexed like the places */
+    public static double[][] embed(IndexedDistanceData data) {
+        return embed(data.size(), data::getDistance);
+    }
+
+    /** symmetric distances between {@code 0..n-1} */
+    interface Distances {
+        double get(int i, int j);
+    }
+
+    static double[][] embed(int n, Distances distances) {
+        Eigenpairs pairs = iterate(n, distances, 0.);
+        if (Math.min(pairs.lambdaU, pairs.lambdaV) < -TOLERANCE * Math.max(pairs.lambdaU, pairs.lambdaV)) {
+            pairs = iterate(n, distances, gershgorinRadius(n, distances));
+        }
+
+        double scaleU = Math.sqrt(Math.max(pairs.lambdaU, 0.));
+        double scaleV = Math.sqrt(Math.max(pairs.lambdaV, 0.));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; ++i) {
+            x[i] = pairs.u[i] * scaleU;
+            y[i] = pairs.v[i] * scaleV;
+        }
+        return new double[][] { x, y };
+    }
+
+    /** two orthonormal eigenvectors of {@code B} with their eigenvalues */
+    private static class Eigenpairs {
+
+        final double[] u;
+        final double[] v;
+        final double lambdaU;
+        final double lambdaV;
+
+        Eigenpairs(double[] u, double[] v, double lambdaU, double lambdaV) {
+            this.u = u;
+            this.v = v;
+            this.lambdaU = lambdaU;
+            this.lambdaV = lambdaV;
+        }
+    }
+
+    /** returns the eigenpairs of {@code B} whose eigenvalues plus {@code shift} are the largest in magnitude */
+    private static Eigenpairs iterate(int n, Distances distances, double shift) {
+        double[] u = new double[n];
+        double[] v = new double[n];
+        double[] bu = new double[n];
+        double[] bv = new double[n];
+        // fixed seed, so the embedding only depends on the distances
+        Random random = new Random(n);
+        for (int i = 0; i < n; ++i) {
+            u[i] = random.nextDouble() - .5;
+            v[i] = random.nextDouble() - .5;
+        }
+        center(u);
+        center(v);
+        orthonormalize(u, v);
+
+        // power iteration until the span of u and v is nearly invariant, which happens at the rate of the third
+        // eigenvalue, even if the leading two are close; the trace of B on the span settles much earlier
+        double huu = 0, huv = 0, hvv = 0;
+        for (int iteration = 0; iteration < MAX_ITERATIONS && n > 1; ++iteration) {
+            apply(n, distances, shift, u, v, bu, bv);
+            huu = dot(u, bu);
+            huv = (dot(u, bv) + dot(v, bu)) / 2;
+            hvv = dot(v, bv);
+            double residual = 0;
+            for (int i = 0; i < n; ++i) {
+                double ru = bu[i] - huu * u[i] - huv * v[i];
+                double rv = bv[i] - huv * u[i] - hvv * v[i];
+                residual += ru * ru + rv * rv;
+            }
+            if (Math.sqrt(residual) <= TOLERANCE * (Math.abs(huu) + Math.abs(hvv))) break;
+            double[] swap = u;
+            u = bu;
+            bu = swap;
+            swap = v;
+            v = bv;
+            bv = swap;
+            orthonormalize(u, v);
+        }
+
+        // Rayleigh-Ritz: rotate u and v within their span onto the eigenvectors of the projected 2x2 matrix
+        double angle = Math.atan2(2 * huv, huu - hvv) / 2;
+        double c = Math.cos(angle);
+        double s = Math.sin(angle);
+        double lambdaU = huu * c * c + 2 * huv * c * s + hvv * s * s - shift;
+        double lambdaV = huu * s * s - 2 * huv * c * s + hvv * c * c - shift;
+        for (int i = 0; i < n; ++i) {
+            double ui = u[i];
+            u[i] = c * ui + s * v[i];
+            v[i] = c * v[i] - s * ui;
+        }
+        return new Eigenpairs(u, v, lambdaU, lambdaV);
+    }
+
+    /**
+     * returns {@code max_i sum_j |B_ij|}, with {@code B_ij = -1/2 (d_ij² - r_i - r_j + t)} for the row means {@code r}
+     * and the total mean {@code t} of the squared distances
+     */
+    private static double gershgorinRadius(int n, Distances distances) {
+        double[] rowMeans = new double[n];
+        for (int i = 1; i < n; ++i) {
+            for (int j = 0; j < i; ++j) {
+                double d = distances.get(i, j);
+                rowMeans[i] += d * d;
+                rowMeans[j] += d * d;
+            }
+        }
+        double totalMean = 0;
+        for (int i = 0; i < n; ++i) {
+            rowMeans[i] /= n;
+            totalMean += rowMeans[i];
+        }
+        totalMean /= n;
+        double[] radii = new double[n];
+        for (int i = 0; i < n; ++i) {
+            radii[i] = Math.abs(2 * rowMeans[i] - totalMean) / 2;
+            for (int j = 0; j < i; ++j) {
+                double d = distances.get(i, j);
+                double b = Math.abs(d * d - rowMeans[i] - rowMeans[j] + totalMean) / 2;
+                radii[i] += b;
+                radii[j] += b;
+            }
+        }
+        double radius = 0;
+        for (double each : radii) {
+            radius = Math.max(radius, each);
+        }
+        return radius;
+    }
+
+    /**
+     * stores {@code (B + shift I) u} in {@code bu} and {@code (B + shift I) v} in {@code bv}; {@code u} and {@code v}
+     * must already be centred
+     */
+    private static void apply(int n, Distances distances, double shift, double[] u, double[] v, double[] bu,
+            double[] bv) {
+        for (int i = 0; i < n; ++i) {
+            bu[i] = 0;
+            bv[i] = 0;
+        }
+        for (int i = 1; i < n; ++i) {
+            double sumU = 0;
+            double sumV = 0;
+            for (int j = 0; j < i; ++j) {
+                double d = distances.get(i, j);
+                double squared = d * d;
+                sumU += squared * u[j];
+                sumV += squared * v[j];
+                bu[j] += squared * u[i];
+                bv[j] += squared * v[i];
+            }
+            bu[i] += sumU;
+            bv[i] += sumV;
+        }
+        center(bu);
+        center(bv);
+        for (int i = 0; i < n; ++i) {
+            bu[i] = bu[i] * -.5 + shift * u[i];
+            bv[i] = bv[i] * -.5 + shift * v[i];
+        }
+    }
+
+    private static void center(double[] vector) {
+        double mean = 0;
+        for (double value : vector) {
+            mean += value;
+        }
+        mean /= vector.length;
+        for (int i = 0; i < vector.length; ++i) {
+            vector[i] -= mean;
+        }
+    }
+
+    /**
+     * Gram-Schmidt, keeping the direction of {@code u}; the projection is done twice, because {@code v} may be nearly
+     * parallel to {@code u}, and then a single projection leaves mostly rounding noise that is not orthogonal to it
+     */
+    private static void orthonormalize(double[] u, double[] v) {
+        normalize(u);
+        for (int pass = 0; pass < 2; ++pass) {
+            double projection = dot(u, v);
+            for (int i = 0; i < v.length; ++i) {
+                v[i] -= projection * u[i];
+            }
+            normalize(v);
+        }
+    }
+
+    private static void normalize(double[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        if (norm == 0) return;
+        for (int i = 0; i < vector.length; ++i) {
+            vector[i] /= norm;
+        }
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; ++i) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,40 @@
+package ch.patchcode.port_royale_3.map;
+
+import java.util.Arrays;
+
+/**
+ * Target distances between the nodes of a {@link WorldMap}, indexed in the order the nodes were added. Each appended
+ * row holds the distances to all previously added nodes, {@code NaN} where there is no edge.
+ */
+class DistanceTable {
+
+    private double[] triangle = new double[64];
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    void append(double[] row) {
+        if (row.length != size) {
+            throw new IllegalArgumentException(String.format("expected %d distances, but got %d", size, row.length));
+        }
+        long required = (long) size * (size + 1) / 2;
+        if (required > triangle.length) {
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("too many nodes");
+            }
+            triangle = Arrays.copyOf(triangle, (int) Math.min(Integer.MAX_VALUE - 8L, Math.max(required, 2L * triangle.length)));
+        }
+        System.arraycopy(row, 0, triangle, offset(size), size);
+        ++size;
+    }
+
+    double get(int i, int j) {
+        return i > j ? triangle[offset(i) + j] : triangle[offset(j) + i];
+    }
+
+    private static int offset(int row) {
+        return (int) ((long) row * (row - 1) / 2);
+    }
+}
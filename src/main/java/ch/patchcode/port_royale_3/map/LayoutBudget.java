@@ -0,0 +1,70 @@
+package ch.patchcode.port_royale_3.map;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import ch.patchcode.port_royale_3.map.LayoutResult.StopReason;
+
+/**
+ * Upper bounds for a {@link WorldMap} rebalancing run: a number of passes, a time limit and a cancellation signal.
+ * They are checked after every pass, so a run always makes at least one pass and overshoots the time limit by at most
+ * one pass. The calling thread being interrupted also counts as cancellation; its interrupt flag is left set.
+ * <p>
+ * Budgets are immutable; the time limit starts anew with every run.
+ */
+public final class LayoutBudget {
+
+    public static final LayoutBudget UNLIMITED = new LayoutBudget(Integer.MAX_VALUE, Long.MAX_VALUE, () -> false);
+
+    private final int maxIterations;
+    private final long timeoutNanos;
+    private final BooleanSupplier cancelled;
+
+    private LayoutBudget(int maxIterations, long timeoutNanos, BooleanSupplier cancelled) {
+        this.maxIterations = maxIterations;
+        this.timeoutNanos = timeoutNanos;
+        this.cancelled = cancelled;
+    }
+
+    public LayoutBudget withMaxIterations(int maxIterations) {
+        if (maxIterations < 1) {
+            throw new IllegalArgumentException("at least one iteration is needed, but got " + maxIterations);
+        }
+        return new LayoutBudget(maxIterations, timeoutNanos, cancelled);
+    }
+
+    public LayoutBudget withTimeout(long timeout, TimeUnit unit) {
+        return new LayoutBudget(maxIterations, Math.max(0L, unit.toNanos(timeout)), cancelled);
+    }
+
+    /** @param cancelled asked after every pass whether the run should stop */
+    public LayoutBudget withCancellation(BooleanSupplier cancelled) {
+        return new LayoutBudget(maxIterations, timeoutNanos, cancelled);
+    }
+
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    /**
+     * @return what is left of this budget after a run that started at {@code startNanos} made {@code iterations} passes
+     *         without {@link #exhausted(int, long) exhausting} it, for a follow-up run
+     */
+    LayoutBudget remaining(int iterations, long startNanos) {
+        long leftNanos = timeoutNanos == Long.MAX_VALUE ? timeoutNanos
+                : Math.max(0L, timeoutNanos - (System.nanoTime() - startNanos));
+        return new LayoutBudget(maxIterations - iterations, leftNanos, cancelled);
+    }
+
+    /** @return why a run that started at {@code startNanos} has to stop after {@code iterations} passes, or null */
+    StopReason exhausted(int iterations, long startNanos) {
+        if (cancelled.getAsBoolean() || Thread.currentThread().isInterrupted()) return StopReason.CANCELLED;
+        if (iterations >= maxIterations) return StopReason.MAX_ITERATIONS;
+        if (timeoutNanos != Long.MAX_VALUE && System.nanoTime() - startNanos >= timeoutNanos) return StopReason.TIMEOUT;
+        return null;
+    }
+}
@@ -0,0 +1,11 @@
+package ch.patchcode.port_royale_3.map;
+
+/** Receives the progress of {@link WorldMap} rebalancing, once per pass over the nodes being moved. */
+public interface LayoutListener {
+
+    /**
+     * @param iteration the number of the pass within the current run, starting at 1
+     * @param residual the sum of squared residuals of the pass
+     */
+    void passCompleted(int iteration, double residual);
+}
@@ -0,0 +1,57 @@
+package ch.patchcode.port_royale_3.map;
+
+/**
+ * Outcome of a {@link WorldMap} rebalancing run: the number of passes over the free nodes, the final sum of squared
+ * residuals, the wall time and why the run stopped.
+ */
+public class LayoutResult {
+
+    public enum StopReason {
+        /** the residual reached the limit */
+        CONVERGED,
+        /** the {@link LayoutBudget} ran out of passes */
+        MAX_ITERATIONS,
+        /** the {@link LayoutBudget} ran out of time */
+        TIMEOUT,
+        /** the {@link LayoutBudget} was cancelled or the thread interrupted */
+        CANCELLED
+    }
+
+    private final int iterations;
+    private final double residual;
+    private final long nanos;
+    private final StopReason stopReason;
+
+    public LayoutResult(int iterations, double residual, long nanos, StopReason stopReason) {
+        this.iterations = iterations;
+        this.residual = residual;
+        this.nanos = nanos;
+        this.stopReason = stopReason;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public double getResidual() {
+        return residual;
+    }
+
+    public long getNanos() {
+        return nanos;
+    }
+
+    public StopReason getStopReason() {
+        return stopReason;
+    }
+
+    public boolean isConverged() {
+        return stopReason == StopReason.CONVERGED;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s after %d iterations in %.3f ms, residual %.3g", stopReason, iterations, nanos / 1e6,
+                residual);
+    }
+}
@@ -0,0 +1,64 @@
+package ch.patchcode.port_royale_3.map;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.LongFunction;
+
+import ch.patchcode.graphs.weighted.WeightedEdge;
+import ch.patchcode.graphs.weighted.WeightedVertex;
+
+/**
+ * Runs the same layout from several seeds concurrently and keeps the one with the lowest {@link WorldMap#stress()
+ * stress}. Each run gets its own map, so the layout function only has to create, fill and rebalance a map for the
+ * seed it is given, typically via {@link WorldMap#WorldMap(double, java.util.Random)}.
+ */
+public final class MultiStartLayout {
+
+    private MultiStartLayout() {
+    }
+
+    /**
+     * Returns the layout with the lowest stress; ties go to the earlier seed, so the result only depends on the seeds.
+     */
+    public static <V extends WeightedVertex<V, E>, E extends WeightedEdge<V, E>> WorldMap<V, E> best(
+            ExecutorService executor, LongFunction<WorldMap<V, E>> layout, long... seeds) throws InterruptedException {
+        if (seeds.length == 0) {
+            throw new IllegalArgumentException("no seeds");
+        }
+        List<Future<WorldMap<V, E>>> runs = new ArrayList<>(seeds.length);
+        for (long seed : seeds) {
+            runs.add(executor.submit(() -> layout.apply(seed)));
+        }
+        WorldMap<V, E> best = null;
+        double bestStress = Double.POSITIVE_INFINITY;
+        try {
+            for (Future<WorldMap<V, E>> run : runs) {
+                WorldMap<V, E> map = get(run);
+                double stress = map.stress();
+                if (best == null || stress < bestStress) {
+                    best = map;
+                    bestStress = stress;
+                }
+            }
+        } finally {
+            for (Future<WorldMap<V, E>> run : runs) {
+                run.cancel(true);
+            }
+        }
+        return best;
+    }
+
+    private static <T> T get(Future<T> run) throws InterruptedException {
+        try {
+            return run.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
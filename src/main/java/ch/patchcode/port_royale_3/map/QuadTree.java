@@ -0,0 +1,221 @@
+package ch.patchcode.port_royale_3.map;
+
+import java.util.Arrays;
+
+/**
+ * Barnes-Hut quadtree over node positions, used to approximate the residual of a node in O(log n) instead of O(n).
+ * <p>
+ * A cell that is far away from a node, i.e. whose width divided by the distance to its centroid is below
+ * {@code theta}, is treated as a single body of {@code count} nodes at its centroid, each pulling with the same
+ * distance error as the cell's representative, the member nearest to the centroid. With {@code theta == 0} every cell
+ * is opened and the result is exact.
+ */
+class QuadTree {
+
+    private static final int MAX_DEPTH = 48;
+    private static final int LEAF_SIZE = 1;
+
+    private final DistanceTable targets;
+    private final double scale;
+    private double theta;
+
+    private double[] x;
+    private double[] y;
+    private int[] items = new int[0];
+    private int[] slots = new int[0];
+
+    private int nodes;
+    private double[] width = new double[0];
+    private double[] centerX = new double[0];
+    private double[] centerY = new double[0];
+    private int[] representative = new int[0];
+    private int[] itemFrom = new int[0];
+    private int[] itemTo = new int[0];
+    private int[] children = new int[0];
+
+    QuadTree(DistanceTable targets, double scale, double theta) {
+        this.targets = targets;
+        this.scale = scale;
+        this.theta = theta;
+    }
+
+    void setTheta(double theta) {
+        this.theta = theta;
+    }
+
+    void build(double[] x, double[] y, int count) {
+        this.x = x;
+        this.y = y;
+        if (items.length < count) {
+            items = new int[count];
+            slots = new int[count];
+        }
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < count; ++i) {
+            items[i] = i;
+            x0 = Math.min(x0, x[i]);
+            y0 = Math.min(y0, y[i]);
+            x1 = Math.max(x1, x[i]);
+            y1 = Math.max(y1, y[i]);
+        }
+        nodes = 0;
+        if (count > 0) {
+            build(0, count, x0, y0, Math.max(Math.max(x1 - x0, y1 - y0), Double.MIN_NORMAL) * (1 + 1e-9), 0);
+        }
+        for (int k = 0; k < count; ++k) {
+            slots[items[k]] = k;
+        }
+    }
+
+    private int build(int from, int to, double x0, double y0, double size, int depth) {
+        int node = allocate();
+        width[node] = size;
+        itemFrom[node] = from;
+        itemTo[node] = to;
+
+        double sumX = 0, sumY = 0;
+        for (int k = from; k < to; ++k) {
+            sumX += x[items[k]];
+            sumY += y[items[k]];
+        }
+        centerX[node] = sumX / (to - from);
+        centerY[node] = sumY / (to - from);
+
+        if (to - from <= LEAF_SIZE || depth == MAX_DEPTH) {
+            representative[node] = nearestTo(centerX[node], centerY[node], from, to);
+            return node;
+        }
+
+        double half = size / 2;
+        double midX = x0 + half;
+        double midY = y0 + half;
+        int splitY = partition(from, to, midY, false);
+        int splitX0 = partition(from, splitY, midX, true);
+        int splitX1 = partition(splitY, to, midX, true);
+        int[] bounds = { from, splitX0, splitY, splitX1, to };
+
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int q = 0; q < 4; ++q) {
+            int child = -1;
+            if (bounds[q] < bounds[q + 1]) {
+                child = build(bounds[q], bounds[q + 1], (q & 1) == 0 ? x0 : midX, q < 2 ? y0 : midY, half, depth + 1);
+                int candidate = representative[child];
+                double distance = square(x[candidate] - centerX[node]) + square(y[candidate] - centerY[node]);
+                if (distance < bestDistance) {
+                    best = candidate;
+                    bestDistance = distance;
+                }
+            }
+            children[4 * node + q] = child;
+        }
+        representative[node] = best;
+        return node;
+    }
+
+    /** moves the items below {@code split} to the front and returns the index of the first other item */
+    private int partition(int from, int to, double split, boolean horizontal) {
+        int i = from;
+        int j = to - 1;
+        while (i <= j) {
+            double value = horizontal ? x[items[i]] : y[items[i]];
+            if (value < split) {
+                ++i;
+            } else {
+                int swap = items[i];
+                items[i] = items[j];
+                items[j--] = swap;
+            }
+        }
+        return i;
+    }
+
+    private int nearestTo(double cx, double cy, int from, int to) {
+        int best = items[from];
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int k = from; k < to; ++k) {
+            double distance = square(x[items[k]] - cx) + square(y[items[k]] - cy);
+            if (distance < bestDistance) {
+                best = items[k];
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Adds the approximate residual of node {@code i} to {@code residualX[slot]} and {@code residualY[slot]}. Once
+     * built, the tree is only read, so residuals may be computed concurrently.
+     */
+    void addResidual(int i, double[] residualX, double[] residualY, int slot) {
+        if (nodes > 0) {
+            addResidual(0, i, residualX, residualY, slot);
+        }
+    }
+
+    private void addResidual(int node, int i, double[] residualX, double[] residualY, int slot) {
+        double xi = x[i];
+        double yi = y[i];
+        boolean containsI = slots[i] >= itemFrom[node] && slots[i] < itemTo[node];
+        if (!containsI) {
+            double dx = centerX[node] - xi;
+            double dy = centerY[node] - yi;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            int r = representative[node];
+            double target = targets.get(i, r);
+            if (width[node] < theta * distance && !Double.isNaN(target)) {
+                double error = Math.sqrt(square(x[r] - xi) + square(y[r] - yi)) - target * scale;
+                double f = (itemTo[node] - itemFrom[node]) * error / distance;
+                residualX[slot] += dx * f;
+                residualY[slot] += dy * f;
+                return;
+            }
+        }
+        if (isLeaf(node)) {
+            for (int k = itemFrom[node]; k < itemTo[node]; ++k) {
+                int j = items[k];
+                if (j == i) continue;
+                double target = targets.get(i, j);
+                if (Double.isNaN(target)) continue;
+                double dx = x[j] - xi;
+                double dy = y[j] - yi;
+                double f = 1. - target * scale / Math.sqrt(dx * dx + dy * dy);
+                residualX[slot] += dx * f;
+                residualY[slot] += dy * f;
+            }
+            return;
+        }
+        for (int q = 0; q < 4; ++q) {
+            int child = children[4 * node + q];
+            if (child != -1) {
+                addResidual(child, i, residualX, residualY, slot);
+            }
+        }
+    }
+
+    private boolean isLeaf(int node) {
+        return children[4 * node] == -1 && children[4 * node + 1] == -1 && children[4 * node + 2] == -1
+                && children[4 * node + 3] == -1;
+    }
+
+    private int allocate() {
+        if (nodes == width.length) {
+            int capacity = Math.max(16, 2 * nodes);
+            width = Arrays.copyOf(width, capacity);
+            centerX = Arrays.copyOf(centerX, capacity);
+            centerY = Arrays.copyOf(centerY, capacity);
+            representative = Arrays.copyOf(representative, capacity);
+            itemFrom = Arrays.copyOf(itemFrom, capacity);
+            itemTo = Arrays.copyOf(itemTo, capacity);
+            children = Arrays.copyOf(children, 4 * capacity);
+        }
+        int node = nodes++;
+        Arrays.fill(children, 4 * node, 4 * node + 4, -1);
+        return node;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+}
@@ -1,104 +1,710 @@
 package ch.patchcode.port_royale_3.map;
 
-import static java.util.function.Function.identity;
-
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Random;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 import ch.patchcode.graphs.weighted.WeightedEdge;
 import ch.patchcode.graphs.weighted.WeightedVertex;
+import ch.patchcode.port_royale_3.map.LayoutResult.StopReason;
+import ch.patchcode.port_royale_3.metrics.Counter;
+import ch.patchcode.port_royale_3.metrics.Metrics;
+import ch.patchcode.port_royale_3.metrics.Timer;
 import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
 
+/**
+ * Places the vertices of a weighted graph on a plane so that their distances match the edge weights times
+ * {@code scale}. Positions are kept in primitive arrays indexed in the order the nodes were added, and the relaxation
+ * loops work on preallocated scratch arrays, so rebalancing does not allocate.
+ * <p>
+ * With a {@link #setForkJoinPool(ForkJoinPool) fork-join pool}, the passes of {@link #rebalanceAll(double)} and
+ * {@link #rebalanceAllApproximated(double, double)} run in parallel. The free nodes are processed in fixed blocks whose
+ * residual sums are added in block order, so the result does not depend on the pool or its parallelism.
+ */
 public class WorldMap<V extends WeightedVertex<V, E>, E extends WeightedEdge<V, E>> {
 
-    private final double scale;
+    private static final int STALLED_PASSES = 100;
+    private static final double STALL_TOLERANCE = 1e-3;
+    private static final int BLOCK_SIZE = 16;
 
-    private Map<V, PosImpl> positions = new HashMap<>();
-    private Set<V> fixed = new HashSet<>();
-    private Set<V> free = new HashSet<>();
+    private final double scale;
+    private final Random random;
+
+    private final List<V> nodes = new ArrayList<>();
+    private final Map<V, Integer> indices = new HashMap<>();
+    private final DistanceTable targets = new DistanceTable();
+
+    private double[] x = new double[16];
+    private double[] y = new double[16];
+    private int[] free = new int[16];
+    private int freeCount;
+
+    private double[] residualX = new double[16];
+    private double[] residualY = new double[16];
+    private double[] previousX = new double[16];
+    private double[] previousY = new double[16];
+    private double[] trackedX = new double[16];
+    private double[] trackedY = new double[16];
+    private boolean tracking;
+    private int fullTrackings;
+    private double[] blockResiduals = new double[1];
+
+    private final IntConsumer exactResidualBlock = this::computeResidualBlock;
+    private final IntConsumer applyBlock = this::applyResidualShiftBlock;
+    private ForkJoinPool pool;
+
+    private LayoutListener listener;
+    private Counter passes;
+    private Timer rebalanceTimer;
+    private Timer approximatedTimer;
+    private Timer incrementalTimer;
 
     public WorldMap(double scale) {
+        this(scale, new Random());
+    }
+
+    /** creates a map that draws the start positions of free nodes from {@code random}, so layouts can be repeated */
+    public WorldMap(double scale, Random random) {
         this.scale = scale;
+        this.random = random;
+    }
+
+    /** sets the listener that is told about every rebalancing pass, or {@code null} for none */
+    public void setLayoutListener(LayoutListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Counts the rebalancing passes in {@code worldmap.passes} and times the runs of {@link #rebalanceAll(double,
+     * Solver)}, {@link #rebalanceAllApproximated(double, double)} and {@link #addIncremental(WeightedVertex, int,
+     * double, double)} in {@code worldmap.rebalance}, {@code worldmap.rebalance.approximated} and
+     * {@code worldmap.incremental}. {@code null} turns this off again.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.passes = metrics == null ? null : metrics.counter("worldmap.passes");
+        this.rebalanceTimer = metrics == null ? null : metrics.timer("worldmap.rebalance");
+        this.approximatedTimer = metrics == null ? null : metrics.timer("worldmap.rebalance.approximated");
+        this.incrementalTimer = metrics == null ? null : metrics.timer("worldmap.incremental");
+    }
+
+    private void passCompleted(int iteration, double residual) {
+        if (passes != null) passes.increment();
+        if (listener != null) listener.passCompleted(iteration, residual);
+    }
+
+    private static StopReason stopReason(double residual, double residualLimit, LayoutBudget budget, int iterations,
+            long start) {
+        return residual > residualLimit ? budget.exhausted(iterations, start) : StopReason.CONVERGED;
+    }
+
+    private static LayoutResult result(Timer timer, int iterations, double residual, long start, StopReason reason) {
+        long nanos = System.nanoTime() - start;
+        if (timer != null) timer.record(nanos);
+        return new LayoutResult(iterations, residual, nanos, reason);
+    }
+
+    /** sets the pool that runs the rebalancing passes, or {@code null} to run them on the calling thread */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        this.pool = pool;
     }
 
     public Collection<V> vertices() {
-        return Collections.unmodifiableCollection(positions.keySet());
+        return Collections.unmodifiableCollection(nodes);
     }
 
     public boolean contains(V node) {
-        return positions.keySet().contains(node);
+        return indices.containsKey(node);
     }
 
     public void addFixed(V node, int x, int y) {
         if (contains(node)) {
             throw new DuplicateEntryException(node);
         }
-        fixed.add(node);
-        positions.put(node, new PosImpl(x, y));
+        register(node, x, y);
     }
 
     public void add(V node) {
         if (contains(node)) {
             throw new DuplicateEntryException(node);
         }
-        free.add(node);
-        positions.put(node, randomPos(1.));
+        Pos position = randomPos(1.);
+        int index = register(node, position.getX(), position.getY());
+        free[freeCount++] = index;
     }
 
-    public void rebalance(V node, double residualLimit) {
-        double weight = free.size();
-        PosImpl residual;
+    /**
+     * Adds the given nodes as free nodes at the positions of a {@link ClassicalMds classical MDS} embedding of the
+     * target distances between all nodes, so that the following rebalancing starts from a nearly untangled layout.
+     * The embedding is rotated, mirrored and shifted to fit the nodes already on the map as well as possible.
+     * Classical MDS needs all target distances, so every pair of nodes must be connected by an edge.
+     */
+    public void addAllEmbedded(Collection<V> newNodes) {
+        Set<V> all = new HashSet<>(nodes);
+        for (V node : newNodes) {
+            if (!all.add(node)) {
+                throw new DuplicateEntryException(node);
+            }
+        }
+        for (V node : newNodes) {
+            Set<V> connected = new HashSet<>();
+            for (E edge : node.getEdges()) {
+                connected.addAll(edge.getVertices());
+            }
+            connected.add(node);
+            if (!connected.containsAll(all)) {
+                throw new IllegalArgumentException("classical MDS needs the distances from " + node + " to all nodes");
+            }
+        }
+
+        int placed = nodes.size();
+        for (V node : newNodes) {
+            int index = register(node, 0., 0.);
+            free[freeCount++] = index;
+        }
+        int count = nodes.size();
+
+        double[][] embedding = ClassicalMds.embed(count, targets::get);
+        double[] ex = embedding[0];
+        double[] ey = embedding[1];
+        for (int i = 0; i < count; ++i) {
+            ex[i] *= scale;
+            ey[i] *= scale;
+        }
+
+        // least-squares fit of the embedding onto the placed nodes, by rotation or reflection plus translation
+        double meanEx = 0, meanEy = 0, meanX = 0, meanY = 0;
+        for (int i = 0; i < placed; ++i) {
+            meanEx += ex[i] / placed;
+            meanEy += ey[i] / placed;
+            meanX += x[i] / placed;
+            meanY += y[i] / placed;
+        }
+        double sxx = 0, sxy = 0, syx = 0, syy = 0;
+        for (int i = 0; i < placed; ++i) {
+            sxx += (ex[i] - meanEx) * (x[i] - meanX);
+            sxy += (ex[i] - meanEx) * (y[i] - meanY);
+            syx += (ey[i] - meanEy) * (x[i] - meanX);
+            syy += (ey[i] - meanEy) * (y[i] - meanY);
+        }
+        boolean mirror = Math.hypot(sxx - syy, sxy + syx) > Math.hypot(sxx + syy, sxy - syx);
+        double alpha = mirror ? Math.atan2(sxy + syx, sxx - syy) : Math.atan2(sxy - syx, sxx + syy);
+        double c = Math.cos(alpha);
+        double s = Math.sin(alpha);
+        for (int i = placed; i < count; ++i) {
+            double dx = ex[i] - meanEx;
+            double dy = mirror ? meanEy - ey[i] : ey[i] - meanEy;
+            x[i] = meanX + c * dx - s * dy;
+            y[i] = meanY + s * dx + c * dy;
+        }
+    }
+
+    private int register(V node, double x, double y) {
+        tracking = false;
+        int index = nodes.size();
+        double[] row = new double[index];
+        Arrays.fill(row, Double.NaN);
+        for (E edge : node.getEdges()) {
+            for (V other : edge.getVertices()) {
+                Integer otherIndex = indices.get(other);
+                if (otherIndex != null && !node.equals(other)) {
+                    row[otherIndex] = edge.getWeight();
+                }
+            }
+        }
+        targets.append(row);
+        indices.put(node, index);
+        nodes.add(node);
+
+        if (index == this.x.length) {
+            int capacity = 2 * index;
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.free = Arrays.copyOf(this.free, capacity);
+            this.residualX = Arrays.copyOf(this.residualX, capacity);
+            this.residualY = Arrays.copyOf(this.residualY, capacity);
+            this.previousX = Arrays.copyOf(this.previousX, capacity);
+            this.previousY = Arrays.copyOf(this.previousY, capacity);
+            this.trackedX = Arrays.copyOf(this.trackedX, capacity);
+            this.trackedY = Arrays.copyOf(this.trackedY, capacity);
+            this.blockResiduals = new double[blockCount(capacity)];
+        }
+        this.x[index] = x;
+        this.y[index] = y;
+        return index;
+    }
+
+    public LayoutResult rebalance(V node, double residualLimit) {
+        return rebalance(node, residualLimit, LayoutBudget.UNLIMITED);
+    }
+
+    /** moves only the given node until its squared residual is at most {@code residualLimit} or the budget runs out */
+    public LayoutResult rebalance(V node, double residualLimit, LayoutBudget budget) {
+        tracking = false;
+        long start = System.nanoTime();
+        int index = indices.get(node);
+        double weight = freeCount;
+        int iterations = 0;
+        double residual;
+        StopReason reason;
         do {
-            residual = computeResidual(node);
-            positions.get(node).shiftBy(residual.times(1/weight));
-        } while (residual.absSquare() > residualLimit);
+            computeResidual(index, 0);
+            x[index] += residualX[0] / weight;
+            y[index] += residualY[0] / weight;
+            residual = residualX[0] * residualX[0] + residualY[0] * residualY[0];
+            passCompleted(++iterations, residual);
+        } while ((reason = stopReason(residual, residualLimit, budget, iterations, start)) == null);
+        return result(null, iterations, residual, start, reason);
+    }
+
+    public LayoutResult rebalanceAll(double residualLimit) {
+        return rebalanceAll(residualLimit, Solver.RELAXATION);
+    }
+
+    public LayoutResult rebalanceAll(double residualLimit, Solver solver) {
+        return rebalanceAll(residualLimit, solver, LayoutBudget.UNLIMITED);
+    }
+
+    /**
+     * Moves all free nodes until the sum of their squared residuals is at most {@code residualLimit}, using the given
+     * solver. All solvers minimize the same stress, the sum of squared differences between the node distances and the
+     * scaled edge weights, but they may end in different local minima. The run ends early once the budget runs out,
+     * which inconsistent distances that admit no layout within the limit may need.
+     */
+    public LayoutResult rebalanceAll(double residualLimit, Solver solver, LayoutBudget budget) {
+        tracking = false;
+        long start = System.nanoTime();
+        int iterations = 0;
+        double residual;
+        StopReason reason;
+        switch (solver) {
+        case RELAXATION:
+            do {
+                residual = rebalanceAllOnce();
+                passCompleted(++iterations, residual);
+            } while ((reason = stopReason(residual, residualLimit, budget, iterations, start)) == null);
+            break;
+        case MOMENTUM:
+            for (int k = 0; k < freeCount; ++k) {
+                previousX[k] = x[free[k]];
+                previousY[k] = y[free[k]];
+            }
+            double last = Double.POSITIVE_INFINITY;
+            int accelerated = 0;
+            do {
+                extrapolate(accelerated / (accelerated + 3.));
+                residual = rebalanceAllOnce();
+                passCompleted(++iterations, residual);
+                // adaptive restart: drop the momentum as soon as it stops paying off
+                accelerated = residual < last ? accelerated + 1 : 0;
+                last = residual;
+            } while ((reason = stopReason(residual, residualLimit, budget, iterations, start)) == null);
+            break;
+        case STRESS_MAJORIZATION:
+            do {
+                residual = majorizeAllOnce();
+                passCompleted(++iterations, residual);
+            } while ((reason = stopReason(residual, residualLimit, budget, iterations, start)) == null);
+            break;
+        default:
+            throw new IllegalArgumentException("unknown solver " + solver);
+        }
+        return result(rebalanceTimer, iterations, residual, start, reason);
+    }
+
+    /**
+     * Adds a free node and relaxes it together with its {@code neighbourhood} nearest free nodes, by target distance,
+     * until their residual is at most {@code residualLimit}. The residuals of all free nodes are kept up to date at
+     * O(n) per moved node, and only when their sum exceeds {@code residualBudget} are all nodes rebalanced with
+     * {@link Solver#MOMENTUM}. Building a map this way costs a few local passes per node instead of a full rebalance.
+     * <p>
+     * The returned result counts the local and global passes and reports the residual of all free nodes.
+     */
+    public LayoutResult addIncremental(V node, int neighbourhood, double residualLimit, double residualBudget) {
+        return addIncremental(node, neighbourhood, residualLimit, residualBudget, LayoutBudget.UNLIMITED);
     }
 
-    public void rebalanceAll(double residualLimit) {
+    /**
+     * Like {@link #addIncremental(Object, int, double, double)}, but all passes of the call share the given budget:
+     * the passes settling the new node alone, which are not counted, the local passes and the global rebalance, which
+     * only gets what the local passes left over and is skipped once nothing is left. The result reports why the last
+     * of them stopped.
+     */
+    public LayoutResult addIncremental(V node, int neighbourhood, double residualLimit, double residualBudget,
+            LayoutBudget budget) {
+        long start = System.nanoTime();
+        boolean wasTracking = tracking;
+        add(node);
+        int index = indices.get(node);
+        if (wasTracking) {
+            trackResidual(index);
+            trackMove(index, Double.NaN, Double.NaN);
+            tracking = true;
+        } else {
+            trackAllResiduals();
+        }
+
+        int[] local = nearestFree(index, neighbourhood);
+        double[] startX = new double[local.length];
+        double[] startY = new double[local.length];
+        for (int l = 0; l < local.length; ++l) {
+            startX[l] = x[local[l]];
+            startY[l] = y[local[l]];
+        }
+        int settled = 0;
         double residual;
+        StopReason reason = StopReason.CONVERGED;
+        do {
+            // settle the new node alone first, which is cheap and spares its neighbours most of the way
+            int neighbours = computeResidual(index, 0);
+            if (neighbours == 0) break;
+            x[index] += residualX[0] / neighbours;
+            y[index] += residualY[0] / neighbours;
+            residual = residualX[0] * residualX[0] + residualY[0] * residualY[0];
+        } while ((reason = stopReason(residual, residualLimit, budget, ++settled, start)) == null);
+        int iterations = 0;
         do {
-            Map<V, PosImpl> residuals = rebalanceAllOnce();
-            residual = residuals.values().stream().mapToDouble(PosImpl::absSquare).sum();
-        } while (residual > residualLimit);
+            residual = 0;
+            for (int i : local) {
+                int neighbours = computeResidual(i, 0);
+                if (neighbours == 0) continue;
+                x[i] += residualX[0] / neighbours;
+                y[i] += residualY[0] / neighbours;
+                residual += residualX[0] * residualX[0] + residualY[0] * residualY[0];
+            }
+            passCompleted(++iterations, residual);
+        } while ((reason = stopReason(residual, residualLimit, budget, iterations, start)) == null);
+        // the pull of a node on the others only depends on their positions, so one update per moved node suffices
+        for (int l = 0; l < local.length; ++l) {
+            trackMove(local[l], startX[l], startY[l]);
+        }
+        for (int i : local) {
+            trackResidual(i);
+        }
+
+        residual = trackedResidual();
+        if (residual > residualBudget) {
+            reason = budget.exhausted(iterations, start);
+            if (reason == null) {
+                LayoutResult global = rebalanceAll(residualLimit, Solver.MOMENTUM, budget.remaining(iterations, start));
+                iterations += global.getIterations();
+                reason = global.getStopReason();
+                trackAllResiduals();
+                residual = trackedResidual();
+            }
+        }
+        return result(incrementalTimer, iterations, residual, start, reason);
     }
 
-    private Map<V, PosImpl> rebalanceAllOnce() {
-        double weight = free.size();
-        Map<V, PosImpl> residuals = computeResiduals(free);
-        applyResidualShiftWithWeight(weight, residuals);
-        return residuals;
+    /** returns the stress, the sum of squared differences between node distances and scaled target distances */
+    public double stress() {
+        double stress = 0;
+        for (int i = 1, count = nodes.size(); i < count; ++i) {
+            for (int j = 0; j < i; ++j) {
+                double target = targets.get(i, j);
+                if (Double.isNaN(target)) continue;
+                double error = Math.hypot(x[i] - x[j], y[i] - y[j]) - target * scale;
+                stress += error * error;
+            }
+        }
+        return stress;
     }
 
-    private Map<V, PosImpl> computeResiduals(Set<V> subset) {
-        return subset.stream().collect(Collectors.toMap(identity(), this::computeResidual));
+    /** returns the sum of squared residuals of all free nodes */
+    public double residual() {
+        double residual = 0;
+        for (int k = 0; k < freeCount; ++k) {
+            computeResidual(free[k], 0);
+            residual += residualX[0] * residualX[0] + residualY[0] * residualY[0];
+        }
+        return residual;
     }
 
-    private PosImpl computeResidual(V node) {
-        PosImpl residual = new PosImpl();
-        for (E edge : node.getEdges()) {
-            edge.getVertices().stream()
-                .filter(it -> !node.equals(it))
-                .filter(it -> positions.keySet().contains(it)).findFirst()
-                .map(it -> positions.get(it))
-                .ifPresent(it -> residual.shiftBy(it.minus(positions.get(node), edge.getWeight())));
+    /** returns the given node followed by up to {@code count} free nodes with the smallest target distance to it */
+    private int[] nearestFree(int index, int count) {
+        int[] nearest = new int[count + 1];
+        double[] distances = new double[count + 1];
+        nearest[0] = index;
+        int found = 0;
+        for (int k = 0; k < freeCount; ++k) {
+            int j = free[k];
+            if (j == index) continue;
+            double distance = targets.get(index, j);
+            if (Double.isNaN(distance) || (found == count && (count == 0 || distance >= distances[found]))) continue;
+            int position = found < count ? ++found : found;
+            while (position > 1 && distances[position - 1] > distance) {
+                nearest[position] = nearest[position - 1];
+                distances[position] = distances[position - 1];
+                --position;
+            }
+            nearest[position] = j;
+            distances[position] = distance;
+        }
+        return Arrays.copyOf(nearest, found + 1);
+    }
+
+    private void trackAllResiduals() {
+        for (int i = 0, count = nodes.size(); i < count; ++i) {
+            trackResidual(i);
+        }
+        tracking = true;
+        ++fullTrackings;
+    }
+
+    /** returns how often the residuals of all nodes were recomputed for {@link #addIncremental} */
+    int fullTrackings() {
+        return fullTrackings;
+    }
+
+    private void trackResidual(int index) {
+        computeResidual(index, 0);
+        trackedX[index] = residualX[0];
+        trackedY[index] = residualY[0];
+    }
+
+    /**
+     * updates the tracked residuals of all other nodes after node {@code index} moved away from the given old position,
+     * which is {@code NaN} for a new node
+     */
+    private void trackMove(int index, double oldX, double oldY) {
+        double newX = x[index];
+        double newY = y[index];
+        for (int j = 0, count = nodes.size(); j < count; ++j) {
+            if (j == index) continue;
+            double target = targets.get(index, j);
+            if (Double.isNaN(target)) continue;
+            target *= scale;
+            double dx = newX - x[j];
+            double dy = newY - y[j];
+            double f = 1. - target / Math.sqrt(dx * dx + dy * dy);
+            trackedX[j] += dx * f;
+            trackedY[j] += dy * f;
+            if (!Double.isNaN(oldX)) {
+                dx = oldX - x[j];
+                dy = oldY - y[j];
+                f = 1. - target / Math.sqrt(dx * dx + dy * dy);
+                trackedX[j] -= dx * f;
+                trackedY[j] -= dy * f;
+            }
+        }
+    }
+
+    private double trackedResidual() {
+        double residual = 0;
+        for (int k = 0; k < freeCount; ++k) {
+            int i = free[k];
+            residual += trackedX[i] * trackedX[i] + trackedY[i] * trackedY[i];
+        }
+        return residual;
+    }
+
+    /** ways to minimize the layout stress in {@link WorldMap#rebalanceAll(double, Solver)} */
+    public enum Solver {
+        /** plain relaxation, each pass moves all free nodes by their residual divided by the number of free nodes */
+        RELAXATION,
+        /**
+         * relaxation with Nesterov momentum, restarted whenever the residual grows; runs on the fork-join pool like
+         * {@link #RELAXATION}
+         */
+        MOMENTUM,
+        /**
+         * SMACOF stress majorization, one node at a time: each free node moves to the minimum of the majorizing
+         * function while all others stay, which never increases the stress and already uses the updated positions
+         * for the following nodes; always runs on the calling thread
+         */
+        STRESS_MAJORIZATION
+    }
+
+    /**
+     * Like {@link #rebalanceAll(double)}, but approximates the pull of distant groups of nodes with a Barnes-Hut
+     * quadtree, so a pass costs O(n log n) instead of O(n^2). {@code theta} trades accuracy for speed: a group is
+     * approximated once its cell width is less than {@code theta} times its distance, so 0 is exact and values around
+     * 0.5 are usually a good compromise.
+     * <p>
+     * The approximation error puts a floor under the reachable residual, so once the residual stops improving for
+     * {@value #STALLED_PASSES} passes, the remaining passes are computed exactly.
+     */
+    public LayoutResult rebalanceAllApproximated(double residualLimit, double theta) {
+        return rebalanceAllApproximated(residualLimit, theta, LayoutBudget.UNLIMITED);
+    }
+
+    /** like {@link #rebalanceAllApproximated(double, double)}, but ends early once the budget runs out */
+    public LayoutResult rebalanceAllApproximated(double residualLimit, double theta, LayoutBudget budget) {
+        tracking = false;
+        long start = System.nanoTime();
+        if (freeCount == 0) return result(approximatedTimer, 0, 0., start, StopReason.CONVERGED);
+        QuadTree tree = new QuadTree(targets, scale, theta);
+        IntConsumer approximatedResidualBlock = block -> {
+            for (int k = block * BLOCK_SIZE, end = blockEnd(block); k < end; ++k) {
+                residualX[k] = residualY[k] = 0;
+                tree.addResidual(free[k], residualX, residualY, k);
+            }
+        };
+
+        double residual;
+        StopReason reason;
+        double best = Double.POSITIVE_INFINITY;
+        int stalled = 0;
+        int iterations = 0;
+        do {
+            tree.build(x, y, nodes.size());
+            forEachBlock(approximatedResidualBlock);
+            residual = applyResidualShift();
+            passCompleted(++iterations, residual);
+            if (residual < best * (1. - STALL_TOLERANCE)) {
+                best = residual;
+                stalled = 0;
+            } else if (++stalled == STALLED_PASSES && theta > 0) {
+                tree.setTheta(0.);
+            }
+        } while ((reason = stopReason(residual, residualLimit, budget, iterations, start)) == null);
+        return result(approximatedTimer, iterations, residual, start, reason);
+    }
+
+    private double rebalanceAllOnce() {
+        forEachBlock(exactResidualBlock);
+        return applyResidualShift();
+    }
+
+    /** moves each free node ahead by {@code momentum} times its last step and remembers the resulting position */
+    private void extrapolate(double momentum) {
+        for (int k = 0; k < freeCount; ++k) {
+            int i = free[k];
+            double nextX = x[i] + momentum * (x[i] - previousX[k]);
+            double nextY = y[i] + momentum * (y[i] - previousY[k]);
+            previousX[k] = x[i];
+            previousY[k] = y[i];
+            x[i] = nextX;
+            y[i] = nextY;
+        }
+    }
+
+    /**
+     * Moves each free node in turn by its residual divided by its number of placed neighbours, which is the Guttman
+     * transform for a single node, and returns the sum of squared residuals.
+     */
+    private double majorizeAllOnce() {
+        double residual = 0;
+        for (int k = 0; k < freeCount; ++k) {
+            int i = free[k];
+            int neighbours = computeResidual(i, k);
+            if (neighbours == 0) continue;
+            x[i] += residualX[k] / neighbours;
+            y[i] += residualY[k] / neighbours;
+            residual += residualX[k] * residualX[k] + residualY[k] * residualY[k];
+        }
+        return residual;
+    }
+
+    private void computeResidualBlock(int block) {
+        for (int k = block * BLOCK_SIZE, end = blockEnd(block); k < end; ++k) {
+            computeResidual(free[k], k);
+        }
+    }
+
+    /**
+     * stores the residual of the node with the given index in slot {@code slot} of the residual arrays and returns
+     * the number of nodes it has a target distance to
+     */
+    private int computeResidual(int index, int slot) {
+        double xi = x[index];
+        double yi = y[index];
+        double sumX = 0;
+        double sumY = 0;
+        int neighbours = 0;
+        for (int j = 0, count = nodes.size(); j < count; ++j) {
+            if (j == index) continue;
+            double target = targets.get(index, j);
+            if (Double.isNaN(target)) continue;
+            double dx = x[j] - xi;
+            double dy = y[j] - yi;
+            double f = 1. - target * scale / Math.sqrt(dx * dx + dy * dy);
+            sumX += dx * f;
+            sumY += dy * f;
+            ++neighbours;
+        }
+        residualX[slot] = sumX;
+        residualY[slot] = sumY;
+        return neighbours;
+    }
+
+    /** shifts all free nodes by their residuals divided by their count and returns the sum of squared residuals */
+    private double applyResidualShift() {
+        forEachBlock(applyBlock);
+        double residual = 0;
+        for (int block = 0, blocks = blockCount(freeCount); block < blocks; ++block) {
+            residual += blockResiduals[block];
         }
         return residual;
     }
 
-    private void applyResidualShiftWithWeight(double weight, Map<V, PosImpl> residuals) {
-        for (Entry<V, PosImpl> res : residuals.entrySet()) {
-            positions.get(res.getKey()).shiftBy(res.getValue().times(1/weight));
+    private void applyResidualShiftBlock(int block) {
+        double weight = freeCount;
+        double residual = 0;
+        for (int k = block * BLOCK_SIZE, end = blockEnd(block); k < end; ++k) {
+            x[free[k]] += residualX[k] / weight;
+            y[free[k]] += residualY[k] / weight;
+            residual += residualX[k] * residualX[k] + residualY[k] * residualY[k];
+        }
+        blockResiduals[block] = residual;
+    }
+
+    private void forEachBlock(IntConsumer action) {
+        int blocks = blockCount(freeCount);
+        if (pool == null || blocks < 2) {
+            for (int block = 0; block < blocks; ++block) {
+                action.accept(block);
+            }
+        } else {
+            pool.invoke(new Blocks(action, 0, blocks));
+        }
+    }
+
+    private int blockEnd(int block) {
+        return Math.min(freeCount, (block + 1) * BLOCK_SIZE);
+    }
+
+    private static int blockCount(int count) {
+        return (count + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    }
+
+    private static class Blocks extends RecursiveAction {
+
+        private static final long serialVersionUID = 6243716841985235227L;
+
+        private final IntConsumer action;
+        private final int fromBlock;
+        private final int toBlock;
+
+        Blocks(IntConsumer action, int fromBlock, int toBlock) {
+            this.action = action;
+            this.fromBlock = fromBlock;
+            this.toBlock = toBlock;
+        }
+
+        @Override
+        protected void compute() {
+            if (toBlock - fromBlock == 1) {
+                action.accept(fromBlock);
+            } else {
+                int middle = (fromBlock + toBlock) >>> 1;
+                invokeAll(new Blocks(action, fromBlock, middle), new Blocks(action, middle, toBlock));
+            }
         }
     }
 
     public Pos getPosition(V node) {
-        return positions.get(node);
+        Integer index = indices.get(node);
+        return index == null ? null : new PosView(index);
     }
 
     public interface Pos {
@@ -106,16 +712,14 @@ public class WorldMap<V extends WeightedVertex<V, E>, E extends WeightedEdge<V,
         double getY();
     }
 
-    public PosImpl randomPos(double multiplier) {
-        return new PosImpl(Math.random() * multiplier, Math.random() * multiplier);
+    public Pos randomPos(double multiplier) {
+        return new PosImpl(random.nextDouble() * multiplier, random.nextDouble() * multiplier);
     }
 
-    private class PosImpl implements Pos {
+    private static class PosImpl implements Pos {
 
-        double x;
-        double y;
-
-        public PosImpl() {}
+        private final double x;
+        private final double y;
 
         public PosImpl(double x, double y) {
             this.x = x;
@@ -129,23 +733,23 @@ public class WorldMap<V extends WeightedVertex<V, E>, E extends WeightedEdge<V,
         public double getY() {
             return y;
         }
+    }
 
-        public double absSquare() {
-            return x*x+y*y;
-        }
+    /** live view of a node's position, which follows later rebalancing */
+    private class PosView implements Pos {
+
+        private final int index;
 
-        public void shiftBy(PosImpl delta) {
-            x += delta.x;
-            y += delta.y;
+        public PosView(int index) {
+            this.index = index;
         }
 
-        public PosImpl minus(PosImpl refNode, double weight) {
-            PosImpl d = new PosImpl(x - refNode.x, y - refNode.y).times(1/scale);
-            return d.times((1. - weight/Math.sqrt(d.absSquare()))*scale);
+        public double getX() {
+            return x[index];
         }
 
-        public PosImpl times(double multiplier) {
-            return new PosImpl(x*multiplier, y*multiplier);
+        public double getY() {
+            return y[index];
         }
     }
 
@@ -158,17 +762,18 @@ public class WorldMap<V extends WeightedVertex<V, E>, E extends WeightedEdge<V,
 
     // a bit useless, because this just rotates and scales, but does not fix mirroring
     public void realign(Vertex v1, double x1, double y1, Vertex v2, double x2, double y2) {
+        tracking = false;
 
-        WorldMap<V, E>.PosImpl p1 = positions.get(v1);
-        WorldMap<V, E>.PosImpl p2 = positions.get(v2);
+        int p1 = indices.get(v1);
+        int p2 = indices.get(v2);
 
-        double alpha_old = Math.atan2(p2.y-p1.y, p2.x-p1.x);
+        double alpha_old = Math.atan2(y[p2]-y[p1], x[p2]-x[p1]);
         double alpha_new = Math.atan2(y2-y1, x2-x1);
 
         double alpha = alpha_old - alpha_new;
 
-        double dx_old = p2.x -p1.x;
-        double dy_old = p2.y -p1.y;
+        double dx_old = x[p2] -x[p1];
+        double dy_old = y[p2] -y[p1];
         double dist_old = Math.sqrt(dx_old*dx_old + dy_old*dy_old);
 
         double dx = x2-x1;
@@ -180,11 +785,14 @@ public class WorldMap<V extends WeightedVertex<V, E>, E extends WeightedEdge<V,
         double ca = Math.cos(alpha);
         double sa = Math.sin(alpha);
 
-        double ox = x1 - lambda * (ca*p1.x + sa*p1.y);
-        double oy = y1 - lambda * (ca*p1.y - sa*p1.x);
+        double ox = x1 - lambda * (ca*x[p1] + sa*y[p1]);
+        double oy = y1 - lambda * (ca*y[p1] - sa*x[p1]);
 
-        positions.replaceAll((k,v) -> new PosImpl(
-                lambda * (v.x * ca + v.y * sa) + ox,
-                lambda * (v.y * ca - v.x * sa) + oy));
+        for (int i = 0; i < nodes.size(); ++i) {
+            double vx = x[i];
+            double vy = y[i];
+            x[i] = lambda * (vx * ca + vy * sa) + ox;
+            y[i] = lambda * (vy * ca - vx * sa) + oy;
+        }
     }
 }
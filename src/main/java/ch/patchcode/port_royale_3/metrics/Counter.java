@@ -0,0 +1,24 @@
+package ch.patchcode.port_royale_3.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Thread-safe counter that does not allocate when counting. */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,35 @@
+package ch.patchcode.port_royale_3.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of named {@link Counter counters} and {@link Timer timers}. Instrumented classes look their meters up once,
+ * when the registry is handed to them, so the hot paths only touch the meters themselves.
+ */
+public class Metrics {
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    /** @return the counter with the given name, created on first use */
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, it -> new Counter());
+    }
+
+    /** @return the timer with the given name, created on first use */
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, it -> new Timer());
+    }
+
+    /** @return the current values of all meters; meters that are updated meanwhile may be caught halfway */
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.get()));
+        Map<String, MetricsSnapshot.TimerValues> timerValues = new TreeMap<>();
+        timers.forEach((name, timer) -> timerValues.put(name,
+                new MetricsSnapshot.TimerValues(timer.getCount(), timer.getTotalNanos(), timer.getMaxNanos())));
+        return new MetricsSnapshot(counterValues, timerValues);
+    }
+}
@@ -0,0 +1,72 @@
+package ch.patchcode.port_royale_3.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/** Immutable copy of the values of a {@link Metrics} registry, sorted by name. */
+public class MetricsSnapshot {
+
+    private final Map<String, Long> counters;
+    private final Map<String, TimerValues> timers;
+
+    MetricsSnapshot(Map<String, Long> counters, Map<String, TimerValues> timers) {
+        this.counters = Collections.unmodifiableMap(counters);
+        this.timers = Collections.unmodifiableMap(timers);
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public Map<String, TimerValues> getTimers() {
+        return timers;
+    }
+
+    /** @return the value of the given counter, 0 if it does not exist */
+    public long getCounter(String name) {
+        return counters.getOrDefault(name, 0L);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        counters.forEach((name, value) -> result.append(String.format("%s %d%n", name, value)));
+        timers.forEach((name, values) -> result.append(String.format("%s %s%n", name, values)));
+        return result.toString();
+    }
+
+    public static class TimerValues {
+
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        public TimerValues(long count, long totalNanos, long maxNanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotalNanos() {
+            return totalNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0. : (double) totalNanos / count;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count %d, total %.3f ms, mean %.3f ms, max %.3f ms", count, totalNanos / 1e6,
+                    getMeanNanos() / 1e6, maxNanos / 1e6);
+        }
+    }
+}
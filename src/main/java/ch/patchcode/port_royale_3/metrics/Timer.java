@@ -0,0 +1,42 @@
+package ch.patchcode.port_royale_3.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe aggregate of durations that does not allocate when recording. Callers measure with
+ * {@link System#nanoTime()} themselves:
+ *
+ * <pre>
+ * long start = System.nanoTime();
+ * ...
+ * timer.record(System.nanoTime() - start);
+ * </pre>
+ */
+public final class Timer {
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    Timer() {
+    }
+
+    public void record(long nanos) {
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+}
@@ -0,0 +1,302 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import ch.patchcode.graphs.weighted.WeightedEdge;
+import ch.patchcode.graphs.weighted.WeightedGraph;
+import ch.patchcode.graphs.weighted.WeightedVertex;
+
+/**
+ * Complete distance graph that, unlike {@link DistanceGraph}, does not materialize its edges. Only one object per
+ * vertex is kept; edges and edge sets are lightweight views created on demand from the vertex indices of the shared
+ * {@link IndexedDistanceData}.
+ */
+public class CompactDistanceGraph implements WeightedGraph<CompactDistanceGraph.Vertex, CompactDistanceGraph.Edge> {
+
+    private final IndexedDistanceData data;
+    private final Vertex[] vertices;
+    private final Set<Vertex> vertexSet;
+    private final Set<Edge> edgeSet;
+
+    public CompactDistanceGraph(DistanceData data) {
+        this.data = data instanceof IndexedDistanceData ? (IndexedDistanceData) data : DistanceMatrixData.copyOf(data);
+        this.vertices = new Vertex[this.data.size()];
+        for (int i = 0; i < vertices.length; ++i) {
+            vertices[i] = new Vertex(i);
+        }
+        this.vertexSet = new AllVertices();
+        this.edgeSet = new AllEdges();
+    }
+
+    @Override
+    public Set<Vertex> getVertices() {
+        return vertexSet;
+    }
+
+    @Override
+    public Set<Edge> getEdges() {
+        return edgeSet;
+    }
+
+    public Vertex getVertex(int index) {
+        return vertices[index];
+    }
+
+    public Edge getEdge(Vertex a, Vertex b) {
+        Vertex from = own(a);
+        Vertex to = own(b);
+        if (from == to) {
+            throw new IllegalArgumentException("no edge from " + a.getName() + " to itself");
+        }
+        return new Edge(from.index, to.index);
+    }
+
+    public double getDistance(Vertex a, Vertex b) {
+        return data.getDistance(own(a).index, own(b).index);
+    }
+
+    private Vertex own(Vertex vertex) {
+        if (vertex.graph() != this) {
+            throw new IllegalArgumentException(vertex.getName() + " is not a vertex of this graph");
+        }
+        return vertex;
+    }
+
+    private boolean isOwnEdge(Object o) {
+        return o instanceof Edge && ((Edge) o).graph() == this;
+    }
+
+    public final class Vertex implements WeightedVertex<Vertex, Edge>, Comparable<Vertex> {
+
+        private final int index;
+        private final Set<Edge> edges = new EdgesOf(this);
+
+        private Vertex(int index) {
+            this.index = index;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        private CompactDistanceGraph graph() {
+            return CompactDistanceGraph.this;
+        }
+
+        @Override
+        public String getName() {
+            return data.getPlace(index);
+        }
+
+        @Override
+        public Set<Edge> getEdges() {
+            return edges;
+        }
+
+        @Override
+        public double getWeight() {
+            return 0;
+        }
+
+        @Override
+        public int compareTo(Vertex o) {
+            return getName().compareTo(o.getName());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return this == obj;
+        }
+
+        @Override
+        public int hashCode() {
+            return index;
+        }
+    }
+
+    public final class Edge implements WeightedEdge<Vertex, Edge>, Comparable<Edge> {
+
+        private final int low;
+        private final int high;
+
+        private Edge(int index1, int index2) {
+            this.low = Math.min(index1, index2);
+            this.high = Math.max(index1, index2);
+        }
+
+        private CompactDistanceGraph graph() {
+            return CompactDistanceGraph.this;
+        }
+
+        public Vertex getOther(Vertex vertex) {
+            return vertex.index == low ? vertices[high] : vertices[low];
+        }
+
+        @Override
+        public Set<Vertex> getVertices() {
+            return new EdgeVertices(this);
+        }
+
+        @Override
+        public double getWeight() {
+            return data.getDistance(low, high);
+        }
+
+        @Override
+        public int compareTo(Edge o) {
+            int distanceAscending = Double.compare(getWeight(), o.getWeight());
+            if (distanceAscending != 0) return distanceAscending;
+            int lowAscending = Integer.compare(low, o.low);
+            if (lowAscending != 0) return lowAscending;
+            return Integer.compare(high, o.high);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!isOwnEdge(obj)) return false;
+            Edge other = (Edge) obj;
+            return low == other.low && high == other.high;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * low + high;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s[%.1f:%s-%s]", this.getClass().getSimpleName(), getWeight(),
+                    vertices[low].getName(), vertices[high].getName());
+        }
+    }
+
+    private class EdgeVertices extends AbstractSet<Vertex> {
+
+        private final Edge edge;
+
+        EdgeVertices(Edge edge) {
+            this.edge = edge;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o == vertices[edge.low] || o == vertices[edge.high];
+        }
+
+        @Override
+        public Iterator<Vertex> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(vertices[edge.low], vertices[edge.high])).iterator();
+        }
+
+        @Override
+        public int size() {
+            return 2;
+        }
+    }
+
+    private class EdgesOf extends AbstractSet<Edge> {
+
+        private final Vertex vertex;
+
+        EdgesOf(Vertex vertex) {
+            this.vertex = vertex;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!isOwnEdge(o)) return false;
+            Edge edge = (Edge) o;
+            return edge.low == vertex.index || edge.high == vertex.index;
+        }
+
+        @Override
+        public Iterator<Edge> iterator() {
+            return new Iterator<Edge>() {
+
+                private int other = vertex.index == 0 ? 1 : 0;
+
+                @Override
+                public boolean hasNext() {
+                    return other < vertices.length;
+                }
+
+                @Override
+                public Edge next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    Edge edge = new Edge(vertex.index, other++);
+                    if (other == vertex.index) ++other;
+                    return edge;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return vertices.length - 1;
+        }
+    }
+
+    private class AllEdges extends AbstractSet<Edge> {
+
+        @Override
+        public boolean contains(Object o) {
+            return isOwnEdge(o);
+        }
+
+        @Override
+        public Iterator<Edge> iterator() {
+            return new Iterator<Edge>() {
+
+                private int high = 1;
+                private int low = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return high < vertices.length;
+                }
+
+                @Override
+                public Edge next() {
+                    if (!hasNext()) throw new NoSuchElementException();
+                    Edge edge = new Edge(low++, high);
+                    if (low == high) {
+                        low = 0;
+                        ++high;
+                    }
+                    return edge;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return DistanceMatrixData.triangleSize(vertices.length);
+        }
+    }
+
+    private class AllVertices extends AbstractSet<Vertex> {
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Vertex)) return false;
+            int index = ((Vertex) o).index;
+            return index < vertices.length && vertices[index] == o;
+        }
+
+        @Override
+        public Iterator<Vertex> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(vertices)).iterator();
+        }
+
+        @Override
+        public int size() {
+            return vertices.length;
+        }
+    }
+}
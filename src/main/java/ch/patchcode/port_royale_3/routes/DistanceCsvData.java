@@ -3,6 +3,7 @@ package ch.patchcode.port_royale_3.routes;
 import java.io.BufferedReader;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -19,7 +20,7 @@ public class DistanceCsvData implements DistanceData {
     }
 
     private static Map<String, Map<String, Double>> createFullDistanceMap(InputStream is) {
-        InputStreamReader ir = new InputStreamReader(is);
+        InputStreamReader ir = new InputStreamReader(is, StandardCharsets.UTF_8);
         BufferedReader reader = new BufferedReader(ir);
 
         List<String> places = new ArrayList<>();
@@ -0,0 +1,285 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming loader for the lower-triangular distance CSV format read by {@link DistanceCsvData}. The input is scanned
+ * one character at a time and numbers are parsed in place, so apart from the place names nothing is allocated per row.
+ * <p>
+ * Instances keep the statistics of their last load and are not thread-safe.
+ */
+public class DistanceCsvLoader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int END = -1;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private char[] number = new char[32];
+    private Reader reader;
+    private int position;
+    private int limit;
+    private int line;
+
+    private Statistics statistics = new Statistics(0, 0, 0);
+
+    public DistanceMatrixData load(InputStream is) throws IOException {
+        long start = System.nanoTime();
+        CountingInputStream counter = new CountingInputStream(is);
+        reader = new InputStreamReader(counter, StandardCharsets.UTF_8);
+        position = 0;
+        limit = 0;
+        line = 0;
+        try {
+            DistanceMatrixData data = parse();
+            statistics = new Statistics(data.size(), counter.count, System.nanoTime() - start);
+            return data;
+        } finally {
+            reader = null;
+        }
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    private DistanceMatrixData parse() throws IOException {
+        List<String> places = new ArrayList<>();
+        double[] triangle = new double[1024];
+        int filled = 0;
+        StringBuilder name = new StringBuilder();
+
+        int c = next();
+        while (c != END) {
+            ++line;
+            if (c == '\n' || c == '\r') {
+                c = skipLineBreak(c);
+                continue;
+            }
+
+            name.setLength(0);
+            while (c != ',' && !isLineEnd(c)) {
+                name.append((char) c);
+                c = next();
+            }
+            places.add(name.toString());
+
+            int row = places.size() - 1;
+            int columns = 0;
+            while (c == ',') {
+                c = next();
+                if (isLineEnd(c)) {
+                    // trailing separators are ignored, like String.split does
+                    break;
+                }
+                if (columns == row) {
+                    throw new FormatException(line, String.format("expected %d distances", row));
+                }
+                if (filled == triangle.length) {
+                    triangle = Arrays.copyOf(triangle, grow(triangle.length));
+                }
+                c = parseNumber(c, triangle, filled++);
+                ++columns;
+            }
+            if (columns != row) {
+                throw new FormatException(line, String.format("expected %d distances, but got %d", row, columns));
+            }
+            if (c != END) {
+                c = skipLineBreak(c);
+            }
+        }
+        return DistanceMatrixData.owning(places, Arrays.copyOf(triangle, filled));
+    }
+
+    private static int grow(int length) {
+        if (length >= Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("distance table exceeds the maximum matrix size");
+        }
+        return (int) Math.min(Integer.MAX_VALUE - 8L, 2L * length);
+    }
+
+    private static boolean isLineEnd(int c) {
+        return c == '\n' || c == '\r' || c == END;
+    }
+
+    private int skipLineBreak(int c) throws IOException {
+        int following = next();
+        if (c == '\r' && following == '\n') {
+            following = next();
+        }
+        return following;
+    }
+
+    /**
+     * Parses the number starting with character {@code c} into {@code target[index]} and returns the first character
+     * after it. Numbers that are exactly representable by a mantissa below 2^53 and a power of ten up to 10^22 are
+     * computed directly, which yields the same correctly rounded result as {@link Double#parseDouble(String)}; all
+     * other numbers fall back to it.
+     */
+    private int parseNumber(int c, double[] target, int index) throws IOException {
+        int length = 0;
+        long mantissa = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean negative = false;
+        boolean fraction = false;
+        boolean exact = true;
+
+        while (c == ' ' || c == '\t') {
+            c = next();
+        }
+        if (c == '-' || c == '+') {
+            negative = c == '-';
+            number = append(number, length++, c);
+            c = next();
+        }
+        while (true) {
+            if (c >= '0' && c <= '9') {
+                if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                    if (fraction) ++scale;
+                } else {
+                    exact = false;
+                }
+                ++digits;
+            } else if (c == '.' && !fraction) {
+                fraction = true;
+            } else if (c == 'e' || c == 'E' || c == '-' || c == '+') {
+                exact = false;
+            } else {
+                break;
+            }
+            number = append(number, length++, c);
+            c = next();
+        }
+        while (c == ' ' || c == '\t') {
+            c = next();
+        }
+        if (digits == 0 || (c != ',' && !isLineEnd(c))) {
+            throw new FormatException(line, "malformed distance " + new String(number, 0, length));
+        }
+
+        if (exact && scale < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[scale];
+            target[index] = negative ? -value : value;
+        } else {
+            try {
+                target[index] = Double.parseDouble(new String(number, 0, length));
+            } catch (NumberFormatException e) {
+                throw new FormatException(line, "malformed distance " + new String(number, 0, length));
+            }
+        }
+        return c;
+    }
+
+    private static char[] append(char[] chars, int length, int c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, 2 * length);
+        }
+        chars[length] = (char) c;
+        return chars;
+    }
+
+    private int next() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return END;
+            }
+        }
+        return buffer[position++];
+    }
+
+    public static class Statistics {
+
+        private final long rows;
+        private final long bytes;
+        private final long nanos;
+
+        public Statistics(long rows, long bytes, long nanos) {
+            this.rows = rows;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getRowsPerSecond() {
+            return perSecond(rows);
+        }
+
+        public double getBytesPerSecond() {
+            return perSecond(bytes);
+        }
+
+        private double perSecond(long amount) {
+            return nanos == 0 ? 0. : amount * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows, %d bytes in %.3f ms (%.0f rows/s, %.0f bytes/s)", rows, bytes, nanos / 1e6,
+                    getRowsPerSecond(), getBytesPerSecond());
+        }
+    }
+
+    public static class FormatException extends RuntimeException {
+        private static final long serialVersionUID = 2719466503419251071L;
+        public FormatException(int line, String message) {
+            super(String.format("line %d: %s", line, message));
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) ++count;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
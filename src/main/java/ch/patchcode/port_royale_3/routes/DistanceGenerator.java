@@ -0,0 +1,203 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic distance tables for load and regression tests, from ports placed at random in the plane, either
+ * uniformly or in clustered archipelagos. The sea grows with the number of ports, so that uniform ports are spread
+ * as densely as in the game, whose nearest neighbours are about 0.4 days apart; archipelagos cover the same sea with
+ * tighter groups.
+ * <p>
+ * The distances are Euclidean and thus metric, but like the game's they are rounded to one decimal by default, which
+ * may break the triangle inequality by up to a rounding step; no distance is rounded below one step. Only the port
+ * positions are kept in memory, so {@link #writeCsv(OutputStream)} streams tables of any size. Instances are immutable,
+ * and equal settings generate equal tables.
+ */
+public final class DistanceGenerator {
+
+    private static final double SIDE_PER_SQRT_PORT = .85;
+    private static final long DEFAULT_SEED = 1L;
+    private static final int DEFAULT_DECIMALS = 1;
+    private static final int UNROUNDED = -1;
+    private static final int MAX_DECIMALS = 9;
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L };
+
+    private final int ports;
+    private final int islands;
+    private final long seed;
+    private final int decimals;
+
+    private DistanceGenerator(int ports, int islands, long seed, int decimals) {
+        this.ports = ports;
+        this.islands = islands;
+        this.seed = seed;
+        this.decimals = decimals;
+    }
+
+    /** @return a generator of ports spread uniformly over a square */
+    public static DistanceGenerator plane(int ports) {
+        return archipelagos(ports, 0);
+    }
+
+    /**
+     * @return a generator of ports around the given number of island centres spread uniformly over a square, each port
+     *         at a normally distributed offset from a random centre
+     */
+    public static DistanceGenerator archipelagos(int ports, int islands) {
+        if (ports < 0 || islands < 0) {
+            throw new IllegalArgumentException("ports and islands must not be negative");
+        }
+        return new DistanceGenerator(ports, islands, DEFAULT_SEED, DEFAULT_DECIMALS);
+    }
+
+    public DistanceGenerator withSeed(long seed) {
+        return new DistanceGenerator(ports, islands, seed, decimals);
+    }
+
+    public DistanceGenerator withDecimals(int decimals) {
+        if (decimals < 0 || decimals > MAX_DECIMALS) {
+            throw new IllegalArgumentException(String.format("decimals must be within 0..%d", MAX_DECIMALS));
+        }
+        return new DistanceGenerator(ports, islands, seed, decimals);
+    }
+
+    /** @return a generator of exact Euclidean distances, which satisfy the triangle inequality */
+    public DistanceGenerator unrounded() {
+        return new DistanceGenerator(ports, islands, seed, UNROUNDED);
+    }
+
+    public DistanceMatrixData generate() {
+        long size = (long) ports * (ports - 1) / 2;
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException(ports + " ports exceed the maximum matrix size");
+        }
+        Positions positions = new Positions();
+        double[] triangle = new double[(int) size];
+        for (int i = 0, k = 0; i < ports; ++i) {
+            for (int j = 0; j < i; ++j) {
+                triangle[k++] = positions.distance(i, j);
+            }
+        }
+        return DistanceMatrixData.owning(positions.places(), triangle);
+    }
+
+    /** writes the table in the lower-triangular CSV format read by {@link DistanceCsvLoader}, one row at a time */
+    public void writeCsv(OutputStream out) throws IOException {
+        Positions positions = new Positions();
+        byte[] buffer = new byte[1 << 16];
+        int length = 0;
+        for (int i = 0; i < ports; ++i) {
+            length = flushIfNeeded(out, buffer, length, 64);
+            for (byte b : name(i).getBytes(StandardCharsets.UTF_8)) {
+                buffer[length++] = b;
+            }
+            for (int j = 0; j < i; ++j) {
+                length = flushIfNeeded(out, buffer, length, 32);
+                buffer[length++] = ',';
+                length = appendDistance(positions.distance(i, j), buffer, length);
+            }
+            length = flushIfNeeded(out, buffer, length, 1);
+            buffer[length++] = '\n';
+        }
+        out.write(buffer, 0, length);
+        out.flush();
+    }
+
+    private static int flushIfNeeded(OutputStream out, byte[] buffer, int length, int needed) throws IOException {
+        if (length + needed <= buffer.length) {
+            return length;
+        }
+        out.write(buffer, 0, length);
+        return 0;
+    }
+
+    private int appendDistance(double distance, byte[] buffer, int length) {
+        if (decimals == UNROUNDED) {
+            for (char c : Double.toString(distance).toCharArray()) {
+                buffer[length++] = (byte) c;
+            }
+            return length;
+        }
+        long scaled = Math.round(distance * POWERS_OF_TEN[decimals]);
+        length = appendDigits(scaled / POWERS_OF_TEN[decimals], 1, buffer, length);
+        if (decimals > 0) {
+            buffer[length++] = '.';
+            length = appendDigits(scaled % POWERS_OF_TEN[decimals], decimals, buffer, length);
+        }
+        return length;
+    }
+
+    /** appends {@code value} with at least {@code digits} digits, padded with leading zeros */
+    private static int appendDigits(long value, int digits, byte[] buffer, int length) {
+        int count = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            ++count;
+        }
+        count = Math.max(count, digits);
+        for (int k = length + count - 1; k >= length; --k) {
+            buffer[k] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return length + count;
+    }
+
+    private static String name(int port) {
+        return "Port " + port;
+    }
+
+    /** the port positions, drawn in port order from the seeded random generator */
+    private class Positions {
+
+        private final double[] x = new double[ports];
+        private final double[] y = new double[ports];
+
+        Positions() {
+            Random random = new Random(seed);
+            double side = SIDE_PER_SQRT_PORT * Math.sqrt(ports);
+            if (islands == 0) {
+                for (int i = 0; i < ports; ++i) {
+                    x[i] = random.nextDouble() * side;
+                    y[i] = random.nextDouble() * side;
+                }
+                return;
+            }
+            double[] centreX = new double[islands];
+            double[] centreY = new double[islands];
+            for (int c = 0; c < islands; ++c) {
+                centreX[c] = random.nextDouble() * side;
+                centreY[c] = random.nextDouble() * side;
+            }
+            double spread = side / (10 * Math.sqrt(islands));
+            for (int i = 0; i < ports; ++i) {
+                int c = random.nextInt(islands);
+                x[i] = centreX[c] + random.nextGaussian() * spread;
+                y[i] = centreY[c] + random.nextGaussian() * spread;
+            }
+        }
+
+        double distance(int i, int j) {
+            double dx = x[i] - x[j];
+            double dy = y[i] - y[j];
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (decimals == UNROUNDED) {
+                return distance;
+            }
+            double scale = POWERS_OF_TEN[decimals];
+            return Math.max(1., Math.round(distance * scale)) / scale;
+        }
+
+        List<String> places() {
+            List<String> places = new ArrayList<>(ports);
+            for (int i = 0; i < ports; ++i) {
+                places.add(name(i));
+            }
+            return places;
+        }
+    }
+}
@@ -1,39 +1,120 @@
 package ch.patchcode.port_royale_3.routes;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.stream.Collectors;
 
+import ch.patchcode.graphs.trees.Tree;
+import ch.patchcode.graphs.weighted.TourShortcutOptimizer;
 import ch.patchcode.graphs.weighted.WeightedEdge;
 import ch.patchcode.graphs.weighted.WeightedGraph;
 import ch.patchcode.graphs.weighted.WeightedVertex;
+import ch.patchcode.port_royale_3.metrics.Counter;
+import ch.patchcode.port_royale_3.metrics.Metrics;
+import ch.patchcode.port_royale_3.metrics.Timer;
 
 public class DistanceGraph implements WeightedGraph<DistanceGraph.Vertex, DistanceGraph.Edge> {
 
+    private static final int ROWS_PER_TASK = 16;
+
+    private final VertexImpl[] vertexArray;
     private final Set<Vertex> vertices;
     private final Set<Edge> edges;
+    private volatile List<Edge> sortedEdges;
+
+    private Counter edgeLookups;
+    private Timer tourTimer;
 
     public DistanceGraph(DistanceData data) {
-        ArrayList<VertexImpl> vertices = new ArrayList<>(
-                data.getPlaces().stream().map(VertexImpl::new).collect(Collectors.toList()));
-        Set<EdgeImpl> edges = new HashSet<EdgeImpl>();
-        for (int i = 0; i < vertices.size(); ++i) {
-            VertexImpl vertex1 = vertices.get(i);
-            for (int j = i + 1; j < vertices.size(); ++j) {
-                VertexImpl vertex2 = vertices.get(j);
-                Double distance = data.getDistance(vertex1.getName(), vertex2.getName());
+        this(data, null);
+    }
+
+    /**
+     * Builds the graph, filling the rows of the distance triangle in parallel on the given pool, unless it is
+     * {@code null}. Each edge is stored in the edge arrays of both of its vertices, at the index of the respective
+     * other vertex; rows write to disjoint slots, so no synchronization is needed.
+     */
+    public DistanceGraph(DistanceData data, ForkJoinPool pool) {
+        List<String> places = new ArrayList<>(data.getPlaces());
+        this.vertexArray = new VertexImpl[places.size()];
+        for (int i = 0; i < vertexArray.length; ++i) {
+            vertexArray[i] = new VertexImpl(i, places.get(i), vertexArray.length);
+        }
+        VertexImpl[] byName = vertexArray.clone();
+        Arrays.sort(byName);
+        for (int rank = 0; rank < byName.length; ++rank) {
+            byName[rank].rank = rank;
+        }
+        IndexedDistanceData indexed = data instanceof IndexedDistanceData ? (IndexedDistanceData) data : null;
+        if (pool == null) {
+            connectRows(data, indexed, 0, vertexArray.length);
+        } else {
+            pool.invoke(new ConnectRows(data, indexed, 0, vertexArray.length));
+        }
+        this.edges = new AllEdges();
+        this.vertices = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(vertexArray)));
+    }
+
+    /**
+     * Counts the edge lookups of {@link #getEdge(Vertex, Vertex)}, {@link #getDistance(Vertex, Vertex)} and
+     * {@link #tourLength(List)} in {@code distancegraph.edge.lookups} and times {@link #createTour(Tree)} in
+     * {@code distancegraph.tour}. {@code null} turns this off again.
+     */
+    public void setMetrics(Metrics metrics) {
+        this.edgeLookups = metrics == null ? null : metrics.counter("distancegraph.edge.lookups");
+        this.tourTimer = metrics == null ? null : metrics.timer("distancegraph.tour");
+    }
+
+    private void connectRows(DistanceData data, IndexedDistanceData indexed, int fromRow, int toRow) {
+        for (int i = fromRow; i < toRow; ++i) {
+            VertexImpl vertex1 = vertexArray[i];
+            for (int j = i + 1; j < vertexArray.length; ++j) {
+                VertexImpl vertex2 = vertexArray[j];
+                double distance = indexed != null ? indexed.getDistance(i, j)
+                        : data.getDistance(vertex1.getName(), vertex2.getName());
                 EdgeImpl edge = new EdgeImpl(vertex1, vertex2, distance);
-                edges.add(edge);
-                vertex1.addEdge(edge);
-                vertex2.addEdge(edge);
+                vertex1.edges[j] = edge;
+                vertex2.edges[i] = edge;
+            }
+        }
+    }
+
+    private class ConnectRows extends RecursiveAction {
+
+        private static final long serialVersionUID = -4419658301365216633L;
+
+        private final DistanceData data;
+        private final IndexedDistanceData indexed;
+        private final int fromRow;
+        private final int toRow;
+
+        ConnectRows(DistanceData data, IndexedDistanceData indexed, int fromRow, int toRow) {
+            this.data = data;
+            this.indexed = indexed;
+            this.fromRow = fromRow;
+            this.toRow = toRow;
+        }
+
+        @Override
+        protected void compute() {
+            if (toRow - fromRow <= ROWS_PER_TASK) {
+                connectRows(data, indexed, fromRow, toRow);
+            } else {
+                int middle = (fromRow + toRow) >>> 1;
+                invokeAll(new ConnectRows(data, indexed, fromRow, middle), new ConnectRows(data, indexed, middle, toRow));
             }
         }
-        this.edges = Collections.unmodifiableSet(edges);
-        this.vertices = Collections.unmodifiableSet(new HashSet<>(vertices));
     }
 
     @Override
@@ -41,15 +122,107 @@ public class DistanceGraph implements WeightedGraph<DistanceGraph.Vertex, Distan
         return vertices;
     }
 
+    /**
+     * @return all edges; the set iterates in the order of {@link #getSortedEdges()}, so spanning tree builders that
+     *         sort the edges by weight with a stable sort find them presorted, with ties resolved by vertex names
+     */
     @Override
     public Set<Edge> getEdges() {
         return edges;
     }
 
+    /**
+     * @return all edges in ascending order by weight and then by the names of their vertices; the order is computed
+     *         once and shared by all callers
+     */
+    public List<Edge> getSortedEdges() {
+        List<Edge> result = sortedEdges;
+        if (result == null) {
+            Edge[] array = new Edge[DistanceMatrixData.triangleSize(vertexArray.length)];
+            int k = 0;
+            for (VertexImpl vertex : vertexArray) {
+                for (int j = vertex.index + 1; j < vertex.edges.length; ++j) {
+                    array[k++] = vertex.edges[j];
+                }
+            }
+            Arrays.parallelSort(array);
+            sortedEdges = result = Collections.unmodifiableList(Arrays.asList(array));
+        }
+        return result;
+    }
+
+    public Edge getEdge(Vertex a, Vertex b) {
+        VertexImpl from = own(a);
+        VertexImpl to = own(b);
+        if (from == to) {
+            throw new IllegalArgumentException("no edge from " + a.getName() + " to itself");
+        }
+        if (edgeLookups != null) edgeLookups.increment();
+        return from.edges[to.index];
+    }
+
+    public double getDistance(Vertex a, Vertex b) {
+        return a == b ? 0. : getEdge(a, b).getWeight();
+    }
+
+    /**
+     * @return the distance between the vertices with the given {@linkplain Vertex#getIndex() indices}, which are not
+     *         checked, for inner loops that keep vertex indices
+     */
+    double getDistance(int fromIndex, int toIndex) {
+        return fromIndex == toIndex ? 0. : vertexArray[fromIndex].edges[toIndex].distance;
+    }
+
+    /** @return the length of the closed tour visiting the given vertices in order and returning to the first */
+    public double tourLength(List<Vertex> tour) {
+        if (tour.size() < 2) return 0.;
+        if (edgeLookups != null) edgeLookups.add(tour.size());
+        VertexImpl first = own(tour.get(0));
+        VertexImpl previous = first;
+        double sum = 0;
+        for (int i = 1; i < tour.size(); ++i) {
+            VertexImpl current = own(tour.get(i));
+            sum += current == previous ? 0. : previous.edges[current.index].distance;
+            previous = current;
+        }
+        return previous == first ? sum : sum + previous.edges[first.index].distance;
+    }
+
+    /** @return the tour {@link TourShortcutOptimizer} creates from the given spanning tree of this graph */
+    public List<Vertex> createTour(Tree<Vertex> tree) {
+        long start = System.nanoTime();
+        List<Vertex> tour = new TourShortcutOptimizer<Vertex, Edge>(tree).createTour();
+        if (tourTimer != null) tourTimer.record(System.nanoTime() - start);
+        return tour;
+    }
+
+    /** @return a view of this graph restricted to the given vertices, see {@link Subgraph} */
+    public Subgraph subgraph(Collection<Vertex> vertices) {
+        return new Subgraph(vertices, null);
+    }
+
+    /**
+     * @return a view of this graph restricted to the given vertices, whose spanning trees are rooted at {@code start}
+     *         and whose tours thus start there
+     */
+    public Subgraph subgraph(Collection<Vertex> vertices, Vertex start) {
+        return new Subgraph(vertices, own(start));
+    }
+
+    private VertexImpl own(Vertex vertex) {
+        int index = vertex.getIndex();
+        if (index < 0 || index >= vertexArray.length || vertexArray[index] != vertex) {
+            throw new IllegalArgumentException(vertex.getName() + " is not a vertex of this graph");
+        }
+        return vertexArray[index];
+    }
+
     public abstract class Vertex implements WeightedVertex<Vertex, Edge>, Comparable<Vertex> {
 
         public abstract String getName();
 
+        public abstract int getIndex();
+
         @Override
         public abstract Set<Edge> getEdges();
 
@@ -77,26 +250,30 @@ public class DistanceGraph implements WeightedGraph<DistanceGraph.Vertex, Distan
 
     private class VertexImpl extends Vertex {
 
+        private final int index;
         private final String name;
-        private final Set<EdgeImpl> edges;
+        private final EdgeImpl[] edges;
+        private int rank;
         private final Set<Edge> unmodifiableEdges;
         private final int hashCode;
 
-        public VertexImpl(String name) {
+        public VertexImpl(int index, String name, int size) {
+            this.index = index;
             this.name = name;
-            this.edges = new HashSet<>();
-            this.unmodifiableEdges = Collections.unmodifiableSet(edges);
+            this.edges = new EdgeImpl[size];
+            this.unmodifiableEdges = new VertexEdges(this);
             this.hashCode = name.hashCode();
         }
 
-        public void addEdge(EdgeImpl edge) {
-            edges.add(edge);
-        }
-
         public String getName() {
             return name;
         }
 
+        @Override
+        public int getIndex() {
+            return index;
+        }
+
         @Override
         public Set<Edge> getEdges() {
             return unmodifiableEdges;
@@ -120,17 +297,25 @@ public class DistanceGraph implements WeightedGraph<DistanceGraph.Vertex, Distan
 
     private class EdgeImpl extends Edge {
 
+        private final VertexImpl vertex1;
+        private final VertexImpl vertex2;
         private final Set<Vertex> vertices;
-        private final Double distance;
+        private final double distance;
+        private final int lowRank;
+        private final int highRank;
         private final int hashCode;
 
-        public EdgeImpl(VertexImpl vertex1, VertexImpl vertex2, Double distance) {
+        public EdgeImpl(VertexImpl vertex1, VertexImpl vertex2, double distance) {
+            this.vertex1 = vertex1;
+            this.vertex2 = vertex2;
             Set<VertexImpl> vertices = new HashSet<>();
             vertices.add(vertex1);
             vertices.add(vertex2);
             this.vertices = Collections.unmodifiableSet(vertices);
             this.distance = distance;
-            this.hashCode = Objects.hash(vertex1, vertex2, distance);
+            this.lowRank = Math.min(vertex1.rank, vertex2.rank);
+            this.highRank = Math.max(vertex1.rank, vertex2.rank);
+            this.hashCode = 31 * (31 * (31 + vertex1.hashCode()) + vertex2.hashCode()) + Double.hashCode(distance);
         }
 
         @Override
@@ -143,23 +328,45 @@ public class DistanceGraph implements WeightedGraph<DistanceGraph.Vertex, Distan
             return distance;
         }
 
+        /**
+         * Orders by ascending distance, then by the names of the vertices; the vertex ranks in name order are
+         * precomputed, so comparing to an edge of the same graph needs no allocation. Edges of other graphs are
+         * compared by their vertex names.
+         */
         @Override
         public int compareTo(Edge o) {
+            if (!(o instanceof EdgeImpl) || ((EdgeImpl) o).graph() != DistanceGraph.this) {
+                return compareByNames(o);
+            }
+            EdgeImpl other = (EdgeImpl) o;
+            int distanceAscending = Double.compare(distance, other.distance);
+            if (distanceAscending != 0) return distanceAscending;
+
+            int firstVertexNameAscending = Integer.compare(lowRank, other.lowRank);
+            if (firstVertexNameAscending != 0) return firstVertexNameAscending;
+
+            return Integer.compare(highRank, other.highRank);
+        }
+
+        private int compareByNames(Edge o) {
             int distanceAscending = Double.compare(getWeight(), o.getWeight());
             if (distanceAscending != 0) return distanceAscending;
 
-            List<Vertex> ownVertices = sortByNameAscending(this.getVertices());
-            List<Vertex> otherVertices = sortByNameAscending(o.getVertices());
+            List<String> ownNames = sortedNames(this);
+            List<String> otherNames = sortedNames(o);
 
-            int firstVertexNameAscending = ownVertices.get(0).getName().compareTo(otherVertices.get(0).getName());
+            int firstVertexNameAscending = ownNames.get(0).compareTo(otherNames.get(0));
             if (firstVertexNameAscending != 0) return firstVertexNameAscending;
 
-            int secondVertexNameAscending = ownVertices.get(1).getName().compareTo(otherVertices.get(1).getName());
-            return secondVertexNameAscending;
+            return ownNames.get(1).compareTo(otherNames.get(1));
         }
 
-        private List<Vertex> sortByNameAscending(Set<Vertex> v1) {
-            return v1.stream().sorted((a,b) -> a.getName().compareTo(b.getName())).collect(Collectors.toList());
+        private List<String> sortedNames(Edge edge) {
+            return edge.getVertices().stream().map(Vertex::getName).sorted().collect(Collectors.toList());
+        }
+
+        private DistanceGraph graph() {
+            return DistanceGraph.this;
         }
 
         @Override
@@ -172,4 +379,188 @@ public class DistanceGraph implements WeightedGraph<DistanceGraph.Vertex, Distan
             return this.hashCode;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Induced subgraph over some of the vertices of a {@link DistanceGraph}. It shares the vertices and edges of the
+     * whole graph, so creating one costs O(k) for k vertices; the sorted edge list among them is built on first use in
+     * O(k^2 log k). Being the whole graph's own, the vertices still list all their edges in {@link Vertex#getEdges()}.
+     * <p>
+     * Spanning trees are rooted at the {@linkplain #getCentralVertex() central vertex}, which is the start port if one
+     * was given, otherwise the vertex with the lowest mean distance to the others in the subgraph.
+     */
+    public class Subgraph implements WeightedGraph<Vertex, Edge> {
+
+        private final VertexImpl[] members;
+        private final BitSet indices = new BitSet(vertexArray.length);
+        private final VertexImpl start;
+        private final Set<Vertex> vertexSet = new SubgraphVertices();
+        private final Set<Edge> edgeSet = new SubgraphEdges();
+        private volatile List<Edge> sortedEdges;
+
+        private Subgraph(Collection<Vertex> vertices, VertexImpl start) {
+            for (Vertex vertex : vertices) {
+                indices.set(own(vertex).index);
+            }
+            if (start != null && !indices.get(start.index)) {
+                throw new IllegalArgumentException("the start " + start.getName() + " is not among the vertices");
+            }
+            this.members = new VertexImpl[indices.cardinality()];
+            for (int i = indices.nextSetBit(0), k = 0; i >= 0; i = indices.nextSetBit(i + 1)) {
+                members[k++] = vertexArray[i];
+            }
+            this.start = start;
+        }
+
+        public DistanceGraph getGraph() {
+            return DistanceGraph.this;
+        }
+
+        /** @return the start port, or {@code null} if none was given */
+        public Vertex getStart() {
+            return start;
+        }
+
+        /** @return the indices of the vertices, as a copy */
+        public BitSet getIndices() {
+            return (BitSet) indices.clone();
+        }
+
+        @Override
+        public Set<Vertex> getVertices() {
+            return vertexSet;
+        }
+
+        /** @return the edges among the vertices; the set iterates in the order of {@link #getSortedEdges()} */
+        @Override
+        public Set<Edge> getEdges() {
+            return edgeSet;
+        }
+
+        /** @return the edges among the vertices, in the order of {@link DistanceGraph#getSortedEdges()} */
+        public List<Edge> getSortedEdges() {
+            List<Edge> result = sortedEdges;
+            if (result == null) {
+                Edge[] array = new Edge[DistanceMatrixData.triangleSize(members.length)];
+                int k = 0;
+                for (int i = 0; i < members.length; ++i) {
+                    for (int j = i + 1; j < members.length; ++j) {
+                        array[k++] = members[i].edges[members[j].index];
+                    }
+                }
+                Arrays.sort(array);
+                sortedEdges = result = Collections.unmodifiableList(Arrays.asList(array));
+            }
+            return result;
+        }
+
+        @Override
+        public Vertex getCentralVertex() {
+            if (start != null) return start;
+            VertexImpl best = null;
+            double bestSum = Double.POSITIVE_INFINITY;
+            for (VertexImpl vertex : members) {
+                double sum = 0;
+                for (VertexImpl other : members) {
+                    if (other != vertex) sum += vertex.edges[other.index].distance;
+                }
+                if (sum < bestSum || sum == bestSum && vertex.rank < best.rank) {
+                    best = vertex;
+                    bestSum = sum;
+                }
+            }
+            return best;
+        }
+
+        /** @return the tour {@link TourShortcutOptimizer} creates from the given spanning tree of this subgraph */
+        public List<Vertex> createTour(Tree<Vertex> tree) {
+            return DistanceGraph.this.createTour(tree);
+        }
+
+        private class SubgraphVertices extends AbstractSet<Vertex> {
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof VertexImpl)) return false;
+                VertexImpl vertex = (VertexImpl) o;
+                return indices.get(vertex.index) && vertexArray[vertex.index] == vertex;
+            }
+
+            @Override
+            public Iterator<Vertex> iterator() {
+                return Collections.<Vertex> unmodifiableList(Arrays.asList(members)).iterator();
+            }
+
+            @Override
+            public int size() {
+                return members.length;
+            }
+        }
+
+        private class SubgraphEdges extends AbstractSet<Edge> {
+
+            @Override
+            public boolean contains(Object o) {
+                return edges.contains(o) && vertexSet.contains(((EdgeImpl) o).vertex1)
+                        && vertexSet.contains(((EdgeImpl) o).vertex2);
+            }
+
+            @Override
+            public Iterator<Edge> iterator() {
+                return getSortedEdges().iterator();
+            }
+
+            @Override
+            public int size() {
+                return DistanceMatrixData.triangleSize(members.length);
+            }
+        }
+    }
+
+    private class VertexEdges extends AbstractSet<Edge> {
+
+        private final VertexImpl vertex;
+
+        VertexEdges(VertexImpl vertex) {
+            this.vertex = vertex;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof EdgeImpl)) return false;
+            EdgeImpl edge = (EdgeImpl) o;
+            return edge.vertex1.index < vertex.edges.length && vertex.edges[edge.vertex1.index] == edge
+                    || edge.vertex2.index < vertex.edges.length && vertex.edges[edge.vertex2.index] == edge;
+        }
+
+        @Override
+        public Iterator<Edge> iterator() {
+            return Arrays.stream(vertex.edges).filter(Objects::nonNull).<Edge>map(it -> it).iterator();
+        }
+
+        @Override
+        public int size() {
+            return vertex.edges.length - 1;
+        }
+    }
+
+    private class AllEdges extends AbstractSet<Edge> {
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof EdgeImpl)) return false;
+            EdgeImpl edge = (EdgeImpl) o;
+            return edge.vertex1.index < vertexArray.length && vertexArray[edge.vertex1.index] == edge.vertex1
+                    && edge.vertex1.edges[edge.vertex2.index] == edge;
+        }
+
+        @Override
+        public Iterator<Edge> iterator() {
+            return getSortedEdges().iterator();
+        }
+
+        @Override
+        public int size() {
+            return DistanceMatrixData.triangleSize(vertexArray.length);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Dense {@link IndexedDistanceData} holding the strictly lower triangle of the symmetric distance matrix in one flat
+ * {@code double[]}, row by row, i.e. in the same order as the rows of the CSV format. Instances are immutable.
+ */
+public class DistanceMatrixData implements IndexedDistanceData {
+
+    private final String[] places;
+    private final Map<String, Integer> indices;
+    private final Set<String> placeSet;
+    private final double[] triangle;
+
+    /** @param triangle the distances, which are copied */
+    public DistanceMatrixData(List<String> places, double[] triangle) {
+        this(places.toArray(new String[places.size()]), triangle.clone());
+    }
+
+    private DistanceMatrixData(String[] places, double[] triangle) {
+        if (triangle.length != triangleSize(places.length)) {
+            throw new IllegalArgumentException(String.format("%d places require %d distances, but got %d",
+                    places.length, triangleSize(places.length), triangle.length));
+        }
+        this.places = places;
+        this.indices = new HashMap<>(places.length * 2);
+        for (int i = 0; i < places.length; ++i) {
+            if (indices.put(places[i], i) != null) {
+                throw new IllegalArgumentException("duplicate place " + places[i]);
+            }
+        }
+        this.placeSet = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(places)));
+        this.triangle = triangle;
+    }
+
+    /**
+     * Takes over the given distances without copying them, which saves the memory of a second copy for large tables;
+     * the caller must not change them afterwards.
+     */
+    static DistanceMatrixData owning(List<String> places, double[] triangle) {
+        return new DistanceMatrixData(places.toArray(new String[places.size()]), triangle);
+    }
+
+    public static DistanceMatrixData copyOf(DistanceData data) {
+        if (data instanceof DistanceMatrixData) {
+            return (DistanceMatrixData) data;
+        }
+        List<String> places = new ArrayList<>(data.getPlaces());
+        double[] triangle = new double[triangleSize(places.size())];
+        int k = 0;
+        for (int i = 0; i < places.size(); ++i) {
+            for (int j = 0; j < i; ++j) {
+                triangle[k++] = data.getDistance(places.get(i), places.get(j));
+            }
+        }
+        return owning(places, triangle);
+    }
+
+    static int triangleSize(int size) {
+        long triangleSize = (long) size * (size - 1) / 2;
+        if (triangleSize > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(size + " places exceed the maximum matrix size");
+        }
+        return size < 2 ? 0 : (int) triangleSize;
+    }
+
+    static void checkIndices(int fromIndex, int toIndex, int size) {
+        if (fromIndex < 0 || fromIndex >= size || toIndex < 0 || toIndex >= size) {
+            throw new IndexOutOfBoundsException(String.format("indices %d and %d of %d places", fromIndex, toIndex,
+                    size));
+        }
+    }
+
+    static long triangleIndex(int fromIndex, int toIndex) {
+        int row = Math.max(fromIndex, toIndex);
+        int column = Math.min(fromIndex, toIndex);
+        return (long) row * (row - 1) / 2 + column;
+    }
+
+    @Override
+    public int size() {
+        return places.length;
+    }
+
+    @Override
+    public int indexOf(String place) {
+        Integer index = indices.get(place);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public String getPlace(int index) {
+        return places[index];
+    }
+
+    @Override
+    public double getDistance(int fromIndex, int toIndex) {
+        checkIndices(fromIndex, toIndex, places.length);
+        if (fromIndex == toIndex) return 0.;
+        return triangle[(int) triangleIndex(fromIndex, toIndex)];
+    }
+
+    @Override
+    public Set<String> getPlaces() {
+        return placeSet;
+    }
+}
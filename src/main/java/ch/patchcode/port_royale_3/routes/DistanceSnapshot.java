@@ -0,0 +1,96 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary snapshot format of a {@link DistanceData}, read back by {@link MappedDistanceData}. All numbers are big
+ * endian:
+ *
+ * <pre>
+ * int     magic "PR3D"
+ * int     format version
+ * int     bytes per distance, 4 (float) or 8 (double)
+ * int     number of places n
+ * long    file offset of the distance triangle
+ * n times int length, UTF-8 bytes of the place name
+ * padding up to the triangle offset, which is a multiple of 8
+ * n*(n-1)/2 distances, the strictly lower triangle row by row
+ * </pre>
+ */
+public final class DistanceSnapshot {
+
+    static final int MAGIC = 0x50523344;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 4 + 4 + 8;
+
+    public enum Precision {
+        FLOAT(4), DOUBLE(8);
+
+        final int bytes;
+
+        Precision(int bytes) {
+            this.bytes = bytes;
+        }
+
+        static Precision ofBytes(int bytes) {
+            for (Precision precision : values()) {
+                if (precision.bytes == bytes) return precision;
+            }
+            throw new IllegalArgumentException("unsupported distance size " + bytes);
+        }
+    }
+
+    private DistanceSnapshot() {
+    }
+
+    public static void write(DistanceData data, Path path, Precision precision) throws IOException {
+        IndexedDistanceData indexed = data instanceof IndexedDistanceData ? (IndexedDistanceData) data : null;
+        List<String> places = new ArrayList<>(data.getPlaces());
+        List<byte[]> names = new ArrayList<>(places.size());
+        long nameTableSize = 0;
+        for (String place : places) {
+            byte[] name = place.getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            nameTableSize += 4 + name.length;
+        }
+        long triangleOffset = align(HEADER_SIZE + nameTableSize);
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(precision.bytes);
+            out.writeInt(places.size());
+            out.writeLong(triangleOffset);
+            for (byte[] name : names) {
+                out.writeInt(name.length);
+                out.write(name);
+            }
+            for (long padding = triangleOffset - HEADER_SIZE - nameTableSize; padding > 0; --padding) {
+                out.writeByte(0);
+            }
+            for (int i = 0; i < places.size(); ++i) {
+                for (int j = 0; j < i; ++j) {
+                    double distance = indexed != null ? indexed.getDistance(i, j)
+                            : data.getDistance(places.get(i), places.get(j));
+                    if (precision == Precision.FLOAT) {
+                        out.writeFloat((float) distance);
+                    } else {
+                        out.writeDouble(distance);
+                    }
+                }
+            }
+        }
+    }
+
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+}
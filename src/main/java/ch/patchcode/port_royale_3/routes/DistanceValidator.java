@@ -0,0 +1,294 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Checks that a {@link DistanceData} is a metric up to a tolerance: every distance is present, not negative and the
+ * same in both directions, and no distance is longer than a detour via a third place.
+ * <p>
+ * The distances are copied into a full n×n {@code double[]} matrix, 8n² bytes, so that the O(n³) triangle check runs
+ * over contiguous rows. It goes through tiles of {@value #BLOCK}×{@value #BLOCK} entries that stay in the cache, with
+ * the row tiles in parallel on the given pool, unless it is {@code null}. The validation stops once more than the
+ * maximum number of violations are found. Each row tile keeps the first violations in its own fixed order, and the
+ * tiles are merged in row order, so the report is the same with or without pool, also when it is truncated.
+ */
+public class DistanceValidator {
+
+    static final int BLOCK = 64;
+
+    public enum Kind {
+        /** a distance is {@code null} or {@code NaN} */
+        MISSING,
+        /** a distance is negative */
+        NEGATIVE,
+        /** the distances in both directions differ by more than the tolerance */
+        ASYMMETRIC,
+        /** a distance exceeds a detour via a third place by more than the tolerance */
+        TRIANGLE
+    }
+
+    private final double tolerance;
+    private final int maxViolations;
+    private final ForkJoinPool pool;
+
+    public DistanceValidator(double tolerance, int maxViolations) {
+        this(tolerance, maxViolations, null);
+    }
+
+    /**
+     * @param tolerance the largest difference that is not a violation, e.g. the rounding step of the distances
+     * @param maxViolations how many violations to collect before stopping; 1 stops at the first
+     */
+    public DistanceValidator(double tolerance, int maxViolations, ForkJoinPool pool) {
+        if (!(tolerance >= 0) || maxViolations < 1) {
+            throw new IllegalArgumentException("the tolerance must not be negative and at least one violation kept");
+        }
+        this.tolerance = tolerance;
+        this.maxViolations = maxViolations;
+        this.pool = pool;
+    }
+
+    public Report validate(DistanceData data) {
+        return new Run(data).validate();
+    }
+
+    /** the state of one validation */
+    private class Run {
+
+        private final List<String> places;
+        private final int n;
+        private final double[] matrix;
+        private final List<Violation> violations = new ArrayList<>();
+        /** how many triangle violations each row tile may keep; one more shows that there are more */
+        private int budget;
+        private List<List<Violation>> tiles;
+        /** the first row tile that found more violations than the budget, so that the later ones are not needed */
+        private volatile int fullTile = Integer.MAX_VALUE;
+
+        Run(DistanceData data) {
+            this.places = new ArrayList<>(data.getPlaces());
+            this.n = places.size();
+            if ((long) n * n > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException(n + " places exceed the maximum matrix size");
+            }
+            this.matrix = new double[n * n];
+            IndexedDistanceData indexed = data instanceof IndexedDistanceData ? (IndexedDistanceData) data : null;
+            for (int i = 0; i < n; ++i) {
+                for (int j = 0; j < n; ++j) {
+                    if (i == j) continue;
+                    if (indexed != null) {
+                        matrix[i * n + j] = indexed.getDistance(i, j);
+                    } else {
+                        Double distance = data.getDistance(places.get(i), places.get(j));
+                        matrix[i * n + j] = distance == null ? Double.NaN : distance;
+                    }
+                }
+            }
+        }
+
+        Report validate() {
+            checkEntries();
+            if (violations.size() <= maxViolations) {
+                int blocks = (n + BLOCK - 1) / BLOCK;
+                budget = maxViolations - violations.size();
+                tiles = new ArrayList<>(Collections.nCopies(blocks, Collections.<Violation> emptyList()));
+                if (pool == null || blocks < 2) {
+                    for (int ib = 0, found = 0; ib < blocks && found <= budget; ++ib) {
+                        checkTriangles(ib);
+                        found += tiles.get(ib).size();
+                    }
+                } else {
+                    pool.invoke(new Triangles(0, blocks));
+                }
+                for (List<Violation> tile : tiles) {
+                    violations.addAll(tile);
+                }
+            }
+            boolean truncated = violations.size() > maxViolations;
+            List<Violation> sorted = new ArrayList<>(violations.subList(0, Math.min(violations.size(), maxViolations)));
+            Collections.sort(sorted, Comparator.comparing(Violation::getKind).thenComparingInt(Violation::getFrom)
+                    .thenComparingInt(Violation::getVia).thenComparingInt(Violation::getTo));
+            return new Report(n, sorted, truncated);
+        }
+
+        private void checkEntries() {
+            for (int i = 0; i < n && violations.size() <= maxViolations; ++i) {
+                for (int j = i + 1; j < n; ++j) {
+                    double there = matrix[i * n + j];
+                    double back = matrix[j * n + i];
+                    if (Double.isNaN(there) || Double.isNaN(back)) {
+                        violations.add(new Violation(Kind.MISSING, i, -1, j, places, Double.NaN));
+                    } else if (there < 0 || back < 0) {
+                        violations.add(new Violation(Kind.NEGATIVE, i, -1, j, places, -Math.min(there, back)));
+                    } else if (Math.abs(there - back) > tolerance) {
+                        violations.add(new Violation(Kind.ASYMMETRIC, i, -1, j, places, Math.abs(there - back)));
+                    }
+                }
+            }
+        }
+
+        /**
+         * checks whether {@code d(i, k) <= d(i, j) + d(j, k) + tolerance} for all {@code i < k} and {@code j} with
+         * {@code i} in row tile {@code ib}, in a fixed order, until more than the budget are found; the symmetric cases
+         * {@code i > k} are covered by the symmetry check
+         */
+        void checkTriangles(int ib) {
+            List<Violation> found = new ArrayList<>();
+            int iFrom = ib * BLOCK;
+            int iTo = Math.min(n, iFrom + BLOCK);
+            search:
+            for (int kFrom = iFrom; kFrom < n; kFrom += BLOCK) {
+                int kTo = Math.min(n, kFrom + BLOCK);
+                for (int jFrom = 0; jFrom < n; jFrom += BLOCK) {
+                    if (ib > fullTile) return;
+                    int jTo = Math.min(n, jFrom + BLOCK);
+                    checkTile(iFrom, iTo, jFrom, jTo, kFrom, kTo, found);
+                    if (found.size() > budget) {
+                        synchronized (this) {
+                            fullTile = Math.min(fullTile, ib);
+                        }
+                        break search;
+                    }
+                }
+            }
+            tiles.set(ib, found);
+        }
+
+        private void checkTile(int iFrom, int iTo, int jFrom, int jTo, int kFrom, int kTo, List<Violation> found) {
+            for (int i = iFrom; i < iTo && found.size() <= budget; ++i) {
+                int rowI = i * n;
+                int kStart = Math.max(kFrom, i + 1);
+                for (int j = jFrom; j < jTo; ++j) {
+                    int rowJ = j * n;
+                    double limit = matrix[rowI + j] + tolerance;
+                    for (int k = kStart; k < kTo; ++k) {
+                        if (matrix[rowI + k] - matrix[rowJ + k] > limit && found.size() <= budget) {
+                            found.add(new Violation(Kind.TRIANGLE, i, j, k, places,
+                                    matrix[rowI + k] - matrix[rowI + j] - matrix[rowJ + k]));
+                        }
+                    }
+                }
+            }
+        }
+
+        private class Triangles extends RecursiveAction {
+
+            private static final long serialVersionUID = 5215804417923625130L;
+
+            private final int fromBlock;
+            private final int toBlock;
+
+            Triangles(int fromBlock, int toBlock) {
+                this.fromBlock = fromBlock;
+                this.toBlock = toBlock;
+            }
+
+            @Override
+            protected void compute() {
+                if (toBlock - fromBlock == 1) {
+                    checkTriangles(fromBlock);
+                } else {
+                    int middle = (fromBlock + toBlock) >>> 1;
+                    invokeAll(new Triangles(fromBlock, middle), new Triangles(middle, toBlock));
+                }
+            }
+        }
+    }
+
+    public static class Report {
+
+        private final int places;
+        private final List<Violation> violations;
+        private final boolean truncated;
+
+        Report(int places, List<Violation> violations, boolean truncated) {
+            this.places = places;
+            this.violations = Collections.unmodifiableList(violations);
+            this.truncated = truncated;
+        }
+
+        public int getPlaces() {
+            return places;
+        }
+
+        public boolean isValid() {
+            return violations.isEmpty();
+        }
+
+        /** @return the violations found, by kind and then by place indices */
+        public List<Violation> getViolations() {
+            return violations;
+        }
+
+        /** @return whether the validation stopped at the maximum number of violations, so that there are more */
+        public boolean isTruncated() {
+            return truncated;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder result = new StringBuilder(String.format("%d places, %d%s violations", places,
+                    violations.size(), truncated ? "+" : ""));
+            for (Violation violation : violations) {
+                result.append(System.lineSeparator()).append(violation);
+            }
+            return result.toString();
+        }
+    }
+
+    public static class Violation {
+
+        private final Kind kind;
+        private final int from;
+        private final int via;
+        private final int to;
+        private final List<String> places;
+        private final double excess;
+
+        Violation(Kind kind, int from, int via, int to, List<String> places, double excess) {
+            this.kind = kind;
+            this.from = from;
+            this.via = via;
+            this.to = to;
+            this.places = places;
+            this.excess = excess;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /** @return the index of the first place in {@link DistanceData#getPlaces()} order */
+        public int getFrom() {
+            return from;
+        }
+
+        /** @return the index of the place of the shorter detour, or -1 unless this is a {@link Kind#TRIANGLE} */
+        public int getVia() {
+            return via;
+        }
+
+        public int getTo() {
+            return to;
+        }
+
+        /** @return by how much the distance is negative, asymmetric or longer than the detour; {@code NaN} if missing */
+        public double getExcess() {
+            return excess;
+        }
+
+        @Override
+        public String toString() {
+            if (kind == Kind.TRIANGLE) {
+                return String.format("%s %s-%s exceeds the detour via %s by %.3g", kind, places.get(from),
+                        places.get(to), places.get(via), excess);
+            }
+            return String.format("%s %s-%s by %.3g", kind, places.get(from), places.get(to), excess);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+/**
+ * Exact solver for closed tours over up to {@link #MAX_PORTS} vertices of a {@link DistanceGraph}, by Held-Karp
+ * dynamic programming: for each subset of the ports other than the start and each port {@code j} in it, the table
+ * holds the length of the shortest path from the start through the subset ending in {@code j}. Subsets are bitmasks,
+ * and the table is a flat primitive array of {@code 2^(n-1) * (n-1)} entries, {@code double} if that fits the memory
+ * limit, otherwise {@code float}. All subsets of one size only depend on the smaller ones, so each size is one layer
+ * that is filled in parallel on the given pool, unless it is {@code null}.
+ * <p>
+ * Being exact, it also serves to check how far heuristics like {@link TourImprover} are off.
+ */
+public class HeldKarpSolver {
+
+    /** the most ports a tour may have; the table of 22 ports needs 176 MB as {@code float} */
+    public static final int MAX_PORTS = 22;
+
+    private static final int MASKS_PER_TASK = 1 << 12;
+
+    private final DistanceGraph graph;
+    private final ForkJoinPool pool;
+    private final long maxTableBytes;
+
+    /** solves sequentially, with tables of up to a quarter of the maximum heap size */
+    public HeldKarpSolver(DistanceGraph graph) {
+        this(graph, null, Runtime.getRuntime().maxMemory() / 4);
+    }
+
+    /** @param maxTableBytes the limit for the table size, which also decides between {@code double} and {@code float} */
+    public HeldKarpSolver(DistanceGraph graph, ForkJoinPool pool, long maxTableBytes) {
+        this.graph = graph;
+        this.pool = pool;
+        this.maxTableBytes = maxTableBytes;
+    }
+
+    /** @return the number of table entries for a tour over the given number of ports */
+    public static long tableEntries(int ports) {
+        return ports < 2 ? 0 : (1L << (ports - 1)) * (ports - 1);
+    }
+
+    /**
+     * @return a shortest closed tour over the given ports, starting with the first of them
+     * @throws TooLargeException if there are more than {@link #MAX_PORTS} ports or the table exceeds the memory limit
+     */
+    public List<Vertex> solve(List<Vertex> ports) {
+        Set<Vertex> distinct = new HashSet<>(ports);
+        if (distinct.size() != ports.size()) {
+            throw new IllegalArgumentException("a tour must not visit a vertex twice");
+        }
+        if (ports.size() > MAX_PORTS) {
+            throw new TooLargeException(String.format("%d ports exceed the limit of %d", ports.size(), MAX_PORTS));
+        }
+        if (ports.size() < 4) {
+            return new ArrayList<>(ports);
+        }
+        long entries = tableEntries(ports.size());
+        boolean single = entries * Double.BYTES > maxTableBytes;
+        if (single && entries * Float.BYTES > maxTableBytes) {
+            throw new TooLargeException(String.format("the table for %d ports needs %d bytes, but the limit is %d",
+                    ports.size(), entries * Float.BYTES, maxTableBytes));
+        }
+        return new Table(ports.toArray(new Vertex[ports.size()]), single).solve();
+    }
+
+    /** the state of one run; port {@code m} is the start, ports {@code 0..m-1} are the others, in the given order */
+    private class Table {
+
+        private final Vertex[] ports;
+        private final int m;
+        private final double[] distances;
+        private final double[] doubles;
+        private final float[] floats;
+
+        Table(Vertex[] tour, boolean single) {
+            int n = tour.length;
+            this.m = n - 1;
+            this.ports = new Vertex[n];
+            System.arraycopy(tour, 1, ports, 0, m);
+            ports[m] = tour[0];
+            this.distances = new double[n * n];
+            for (int i = 0; i < n; ++i) {
+                for (int j = i + 1; j < n; ++j) {
+                    double distance = graph.getDistance(ports[i], ports[j]);
+                    distances[i * n + j] = distance;
+                    distances[j * n + i] = distance;
+                }
+            }
+            int size = (int) tableEntries(n);
+            this.doubles = single ? null : new double[size];
+            this.floats = single ? new float[size] : null;
+        }
+
+        List<Vertex> solve() {
+            for (int j = 0; j < m; ++j) {
+                set((1 << j) * m + j, distance(m, j));
+            }
+            for (int layer = 2; layer <= m; ++layer) {
+                if (pool == null) {
+                    fill(layer, 0, 1 << m);
+                } else {
+                    pool.invoke(new Fill(layer, 0, 1 << m));
+                }
+            }
+
+            int full = (1 << m) - 1;
+            int last = -1;
+            double best = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < m; ++j) {
+                double length = get(full * m + j) + distance(j, m);
+                if (length < best) {
+                    best = length;
+                    last = j;
+                }
+            }
+
+            Vertex[] tour = new Vertex[m + 1];
+            tour[0] = ports[m];
+            for (int mask = full, position = m; position > 0; --position) {
+                tour[position] = ports[last];
+                int previous = mask ^ (1 << last);
+                last = previous == 0 ? m : predecessor(previous, last);
+                mask = previous;
+            }
+            List<Vertex> result = new ArrayList<>(tour.length);
+            for (Vertex port : tour) {
+                result.add(port);
+            }
+            return result;
+        }
+
+        /** fills the entries of the subsets with {@code layer} ports among the masks {@code from..to-1} */
+        void fill(int layer, int from, int to) {
+            for (int mask = from; mask < to; ++mask) {
+                if (Integer.bitCount(mask) != layer) continue;
+                for (int rest = mask; rest != 0; rest &= rest - 1) {
+                    int j = Integer.numberOfTrailingZeros(rest);
+                    int previous = mask ^ (1 << j);
+                    double best = Double.POSITIVE_INFINITY;
+                    for (int others = previous; others != 0; others &= others - 1) {
+                        int k = Integer.numberOfTrailingZeros(others);
+                        best = Math.min(best, get(previous * m + k) + distance(k, j));
+                    }
+                    set(mask * m + j, best);
+                }
+            }
+        }
+
+        /** @return the last port of a shortest path through {@code mask} that {@code j} extends */
+        private int predecessor(int mask, int j) {
+            int best = -1;
+            double bestLength = Double.POSITIVE_INFINITY;
+            for (int others = mask; others != 0; others &= others - 1) {
+                int k = Integer.numberOfTrailingZeros(others);
+                double length = get(mask * m + k) + distance(k, j);
+                if (length < bestLength) {
+                    best = k;
+                    bestLength = length;
+                }
+            }
+            return best;
+        }
+
+        private double distance(int i, int j) {
+            return distances[i * (m + 1) + j];
+        }
+
+        private double get(int index) {
+            return doubles != null ? doubles[index] : floats[index];
+        }
+
+        private void set(int index, double value) {
+            if (doubles != null) {
+                doubles[index] = value;
+            } else {
+                floats[index] = (float) value;
+            }
+        }
+
+        private class Fill extends RecursiveAction {
+
+            private static final long serialVersionUID = 3902117726480175412L;
+
+            private final int layer;
+            private final int from;
+            private final int to;
+
+            Fill(int layer, int from, int to) {
+                this.layer = layer;
+                this.from = from;
+                this.to = to;
+            }
+
+            @Override
+            protected void compute() {
+                if (to - from <= MASKS_PER_TASK) {
+                    fill(layer, from, to);
+                } else {
+                    int middle = (from + to) >>> 1;
+                    invokeAll(new Fill(layer, from, middle), new Fill(layer, middle, to));
+                }
+            }
+        }
+    }
+
+    public static class TooLargeException extends RuntimeException {
+        private static final long serialVersionUID = -6183022417368893425L;
+        public TooLargeException(String message) {
+            super(message);
+        }
+    }
+}
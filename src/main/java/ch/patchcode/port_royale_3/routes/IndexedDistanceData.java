@@ -0,0 +1,25 @@
+package ch.patchcode.port_royale_3.routes;
+
+/**
+ * {@link DistanceData} whose places are interned to the indices {@code 0..size()-1}, so that distances can be looked
+ * up without hashing or boxing. {@link #getPlaces()} iterates in index order.
+ */
+public interface IndexedDistanceData extends DistanceData {
+
+    int size();
+
+    /** @return the index of the given place, or -1 if it is unknown */
+    int indexOf(String place);
+
+    String getPlace(int index);
+
+    double getDistance(int fromIndex, int toIndex);
+
+    @Override
+    default Double getDistance(String fromPlace, String toPlace) {
+        int fromIndex = indexOf(fromPlace);
+        int toIndex = indexOf(toPlace);
+        if (fromIndex < 0 || toIndex < 0) return null;
+        return getDistance(fromIndex, toIndex);
+    }
+}
@@ -0,0 +1,142 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import ch.patchcode.port_royale_3.routes.DistanceSnapshot.Precision;
+
+/**
+ * {@link IndexedDistanceData} reading distances straight from a memory-mapped {@link DistanceSnapshot} file. Only the
+ * place names are loaded onto the heap; the distance triangle stays in the page cache and is mapped in chunks, so
+ * snapshots larger than 2 GB are supported as well.
+ */
+public class MappedDistanceData implements IndexedDistanceData {
+
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_BITS) - 1;
+
+    private final String[] places;
+    private final Map<String, Integer> indices;
+    private final Set<String> placeSet;
+    private final Precision precision;
+    private final ByteBuffer[] chunks;
+
+    private MappedDistanceData(String[] places, Precision precision, ByteBuffer[] chunks) {
+        this.places = places;
+        this.indices = new HashMap<>(places.length * 2);
+        for (int i = 0; i < places.length; ++i) {
+            indices.put(places[i], i);
+        }
+        this.placeSet = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(places)));
+        this.precision = precision;
+        this.chunks = chunks;
+    }
+
+    /**
+     * @throws IOException if the file cannot be read, or if it is not a snapshot of the supported version or its size
+     *         does not match its header, e.g. because it is truncated or corrupt
+     */
+    public static MappedDistanceData open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0,
+                    Math.min(fileSize, DistanceSnapshot.HEADER_SIZE));
+            if (header.limit() < DistanceSnapshot.HEADER_SIZE || header.getInt() != DistanceSnapshot.MAGIC) {
+                throw new IOException(path + " is not a distance snapshot");
+            }
+            int version = header.getInt();
+            if (version != DistanceSnapshot.VERSION) {
+                throw new IOException(String.format("%s has unsupported version %d", path, version));
+            }
+            int bytes = header.getInt();
+            if (bytes != Precision.FLOAT.bytes && bytes != Precision.DOUBLE.bytes) {
+                throw new IOException(String.format("%s has unsupported distance size %d", path, bytes));
+            }
+            Precision precision = Precision.ofBytes(bytes);
+            int size = header.getInt();
+            long triangleOffset = header.getLong();
+            long nameTableSize = triangleOffset - DistanceSnapshot.HEADER_SIZE;
+            if (size < 0 || nameTableSize < 4L * size || nameTableSize > Integer.MAX_VALUE || triangleOffset % 8 != 0) {
+                throw new IOException(String.format("%s has a corrupt header: %d places, triangle at %d", path, size,
+                        triangleOffset));
+            }
+            long triangleBytes = (long) size * (size - 1) / 2 * precision.bytes;
+            if (fileSize != triangleOffset + triangleBytes) {
+                throw new IOException(String.format("%s has %d bytes, but its header requires %d", path, fileSize,
+                        triangleOffset + triangleBytes));
+            }
+
+            MappedByteBuffer nameTable = channel.map(MapMode.READ_ONLY, DistanceSnapshot.HEADER_SIZE, nameTableSize);
+            String[] places = new String[size];
+            Set<String> distinct = new HashSet<>(size * 2);
+            for (int i = 0; i < size; ++i) {
+                int length = nameTable.remaining() < 4 ? -1 : nameTable.getInt();
+                if (length < 0 || length > nameTable.remaining()) {
+                    throw new IOException(String.format("%s has a corrupt name table at place %d", path, i));
+                }
+                byte[] name = new byte[length];
+                nameTable.get(name);
+                places[i] = new String(name, StandardCharsets.UTF_8);
+                if (!distinct.add(places[i])) {
+                    throw new IOException(String.format("%s has duplicate place %s", path, places[i]));
+                }
+            }
+            if (nameTable.remaining() >= 8) {
+                throw new IOException(String.format("%s has %d bytes after its name table", path,
+                        nameTable.remaining()));
+            }
+
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((triangleBytes + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int k = 0; k < chunks.length; ++k) {
+                long chunkOffset = (long) k << CHUNK_BITS;
+                chunks[k] = channel.map(MapMode.READ_ONLY, triangleOffset + chunkOffset,
+                        Math.min(CHUNK_MASK + 1, triangleBytes - chunkOffset));
+            }
+            return new MappedDistanceData(places, precision, chunks);
+        }
+    }
+
+    @Override
+    public int size() {
+        return places.length;
+    }
+
+    @Override
+    public int indexOf(String place) {
+        Integer index = indices.get(place);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    public String getPlace(int index) {
+        return places[index];
+    }
+
+    @Override
+    public double getDistance(int fromIndex, int toIndex) {
+        DistanceMatrixData.checkIndices(fromIndex, toIndex, places.length);
+        if (fromIndex == toIndex) return 0.;
+        long offset = DistanceMatrixData.triangleIndex(fromIndex, toIndex) * precision.bytes;
+        ByteBuffer chunk = chunks[(int) (offset >>> CHUNK_BITS)];
+        int position = (int) (offset & CHUNK_MASK);
+        return precision == Precision.FLOAT ? chunk.getFloat(position) : chunk.getDouble(position);
+    }
+
+    @Override
+    public Set<String> getPlaces() {
+        return placeSet;
+    }
+}
@@ -0,0 +1,263 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Repairs a {@link DistanceData} that violates the triangle inequality by replacing each distance with the shortest
+ * path between its places, so that the result is a metric; missing distances are filled in the same way.
+ * <p>
+ * This is the Floyd-Warshall algorithm over a full n×n {@code double[]} matrix, 8n² bytes, in tiles of
+ * {@value #BLOCK}×{@value #BLOCK} entries: for each diagonal tile, the tile itself is closed first, then the tiles in
+ * its row and column, and finally all other tiles. The tiles of the last two steps are independent of each other and
+ * run in parallel on the given pool, unless it is {@code null}. Since the matrix stays symmetric, only the tiles on and
+ * below the diagonal are computed, each being copied to its transposed tile right after. Each entry sees the same sums
+ * in the same order either way, so the result does not depend on the pool.
+ */
+public class MetricClosure {
+
+    static final int BLOCK = 64;
+
+    private final ForkJoinPool pool;
+
+    public MetricClosure() {
+        this(null);
+    }
+
+    public MetricClosure(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Reads the distance of each pair of places from the later to the earlier one in {@link DistanceData#getPlaces()}
+     * order, like {@link DistanceMatrixData#copyOf(DistanceData)} does.
+     *
+     * @throws IllegalArgumentException if a distance is negative or two places are not connected at all
+     */
+    public Result close(DistanceData data) {
+        List<String> places = new ArrayList<>(data.getPlaces());
+        int n = places.size();
+        if ((long) n * n > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException(n + " places exceed the maximum matrix size");
+        }
+        IndexedDistanceData indexed = data instanceof IndexedDistanceData ? (IndexedDistanceData) data : null;
+        double[] original = new double[DistanceMatrixData.triangleSize(n)];
+        double[] matrix = new double[n * n];
+        for (int i = 0, t = 0; i < n; ++i) {
+            for (int j = 0; j < i; ++j, ++t) {
+                double distance;
+                if (indexed != null) {
+                    distance = indexed.getDistance(i, j);
+                } else {
+                    Double value = data.getDistance(places.get(i), places.get(j));
+                    distance = value == null ? Double.NaN : value;
+                }
+                if (distance < 0) {
+                    throw new IllegalArgumentException(String.format("negative distance %s between %s and %s",
+                            distance, places.get(i), places.get(j)));
+                }
+                original[t] = distance;
+                double known = Double.isNaN(distance) ? Double.POSITIVE_INFINITY : distance;
+                matrix[i * n + j] = known;
+                matrix[j * n + i] = known;
+            }
+        }
+
+        new Run(matrix, n).close();
+
+        double[] triangle = new double[original.length];
+        List<Correction> corrections = new ArrayList<>();
+        for (int i = 0, t = 0; i < n; ++i) {
+            for (int j = 0; j < i; ++j, ++t) {
+                double closed = matrix[i * n + j];
+                if (closed == Double.POSITIVE_INFINITY) {
+                    throw new IllegalArgumentException(places.get(i) + " and " + places.get(j) + " are not connected");
+                }
+                triangle[t] = closed;
+                if (!(closed >= original[t])) {
+                    corrections.add(new Correction(places.get(i), places.get(j), i, j, original[t], closed));
+                }
+            }
+        }
+        return new Result(DistanceMatrixData.owning(places, triangle), corrections);
+    }
+
+    /** the state of one closure */
+    private class Run {
+
+        private final double[] matrix;
+        private final int n;
+        private final int blocks;
+
+        Run(double[] matrix, int n) {
+            this.matrix = matrix;
+            this.n = n;
+            this.blocks = (n + BLOCK - 1) / BLOCK;
+        }
+
+        void close() {
+            for (int kb = 0; kb < blocks; ++kb) {
+                int pivot = kb;
+                relax(pivot, pivot, pivot);
+                forEach(blocks, ib -> {
+                    if (ib == pivot) return;
+                    relax(ib, pivot, pivot);
+                    mirror(ib, pivot);
+                });
+                forEach(blocks, ib -> {
+                    if (ib == pivot) return;
+                    for (int jb = 0; jb <= ib; ++jb) {
+                        if (jb == pivot) continue;
+                        relax(ib, jb, pivot);
+                        if (jb < ib) mirror(ib, jb);
+                    }
+                });
+            }
+        }
+
+        /** shortens the paths of tile {@code (ib, jb)} via the places of pivot tile {@code kb} */
+        private void relax(int ib, int jb, int kb) {
+            int iFrom = ib * BLOCK, iTo = Math.min(n, iFrom + BLOCK);
+            int jFrom = jb * BLOCK, jTo = Math.min(n, jFrom + BLOCK);
+            int kFrom = kb * BLOCK, kTo = Math.min(n, kFrom + BLOCK);
+            for (int k = kFrom; k < kTo; ++k) {
+                int rowK = k * n;
+                for (int i = iFrom; i < iTo; ++i) {
+                    int rowI = i * n;
+                    double viaK = matrix[rowI + k];
+                    for (int j = jFrom; j < jTo; ++j) {
+                        double path = viaK + matrix[rowK + j];
+                        if (path < matrix[rowI + j]) {
+                            matrix[rowI + j] = path;
+                        }
+                    }
+                }
+            }
+        }
+
+        /** copies tile {@code (ib, jb)} transposed to tile {@code (jb, ib)} */
+        private void mirror(int ib, int jb) {
+            int iFrom = ib * BLOCK, iTo = Math.min(n, iFrom + BLOCK);
+            int jFrom = jb * BLOCK, jTo = Math.min(n, jFrom + BLOCK);
+            for (int i = iFrom; i < iTo; ++i) {
+                for (int j = jFrom; j < jTo; ++j) {
+                    matrix[j * n + i] = matrix[i * n + j];
+                }
+            }
+        }
+
+        private void forEach(int count, IntConsumer action) {
+            if (pool == null) {
+                for (int index = 0; index < count; ++index) {
+                    action.accept(index);
+                }
+            } else {
+                pool.invoke(new Tiles(action, 0, count));
+            }
+        }
+    }
+
+    private static class Tiles extends RecursiveAction {
+
+        private static final long serialVersionUID = -3330781726641215523L;
+
+        private final IntConsumer action;
+        private final int from;
+        private final int to;
+
+        Tiles(IntConsumer action, int from, int to) {
+            this.action = action;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                action.accept(from);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Tiles(action, from, middle), new Tiles(action, middle, to));
+            }
+        }
+    }
+
+    public static class Result {
+
+        private final DistanceMatrixData data;
+        private final List<Correction> corrections;
+
+        Result(DistanceMatrixData data, List<Correction> corrections) {
+            this.data = data;
+            this.corrections = Collections.unmodifiableList(corrections);
+        }
+
+        /** @return the repaired distances, over the places in the same order */
+        public DistanceMatrixData getData() {
+            return data;
+        }
+
+        /** @return the pairs whose distance was shortened or filled in, in the row order of the distance triangle */
+        public List<Correction> getCorrections() {
+            return corrections;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d places, %d corrections", data.size(), corrections.size());
+        }
+    }
+
+    public static class Correction {
+
+        private final String from;
+        private final String to;
+        private final int fromIndex;
+        private final int toIndex;
+        private final double original;
+        private final double corrected;
+
+        Correction(String from, String to, int fromIndex, int toIndex, double original, double corrected) {
+            this.from = from;
+            this.to = to;
+            this.fromIndex = fromIndex;
+            this.toIndex = toIndex;
+            this.original = original;
+            this.corrected = corrected;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        public int getFromIndex() {
+            return fromIndex;
+        }
+
+        public int getToIndex() {
+            return toIndex;
+        }
+
+        /** @return the given distance, {@code NaN} if it was missing */
+        public double getOriginal() {
+            return original;
+        }
+
+        public double getCorrected() {
+            return corrected;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s-%s %.3f -> %.3f", from, to, original, corrected);
+        }
+    }
+}
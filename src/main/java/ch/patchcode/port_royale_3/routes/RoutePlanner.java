@@ -0,0 +1,202 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import ch.patchcode.graphs.weighted.BottomUpBipairingSpanningTree;
+import ch.patchcode.graphs.weighted.GreedyMinimumDistanceSpanningTree;
+import ch.patchcode.graphs.weighted.TopDownBisectionSpanningTree;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+/**
+ * Searches a short closed tour over all vertices of a {@link DistanceGraph} from several starts at once: the tours of
+ * the three spanning tree strategies and a number of random tours, each shortened by a {@link TourImprover}. The starts
+ * run concurrently on the given executor, and the shortest tour found within the time budget wins.
+ */
+public class RoutePlanner {
+
+    private static final long STOP_GRACE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final DistanceGraph graph;
+    private final ExecutorService executor;
+    private final TourImprover improver;
+
+    public RoutePlanner(DistanceGraph graph, ExecutorService executor) {
+        this(graph, executor, new TourImprover(graph));
+    }
+
+    RoutePlanner(DistanceGraph graph, ExecutorService executor, TourImprover improver) {
+        this.graph = graph;
+        this.executor = executor;
+        this.improver = improver;
+    }
+
+    /**
+     * Shortly before the time budget runs out, 10 ms or a quarter of the budget if that is less, the starts still
+     * running are interrupted without being cancelled, so that they hand in the best tour they have found so far. Only
+     * the tours handed in by the end of the budget count: a start that is still building its first tour, which is not
+     * interruptible, is left to finish in the background, and starts that have not begun yet are skipped.
+     *
+     * @param restarts the number of random tours to start from besides the spanning tree tours
+     * @param seed the seed of the first random tour; the others use the following seeds
+     * @return the shortest tour among the starts; ties go to the earlier start, so with enough time the result only
+     *         depends on the arguments
+     * @throws TimeoutException if no start produced a tour in time
+     */
+    public Route plan(int restarts, long seed, long timeout, TimeUnit unit)
+            throws InterruptedException, TimeoutException {
+        List<Start> starts = new ArrayList<>();
+        starts.add(new Start("GreedyMinimumDistanceSpanningTree",
+                () -> graph.createTour(new GreedyMinimumDistanceSpanningTree<>(graph))));
+        starts.add(new Start("TopDownBisectionSpanningTree",
+                () -> graph.createTour(new TopDownBisectionSpanningTree<>(graph))));
+        starts.add(new Start("BottomUpBipairingSpanningTree",
+                () -> graph.createTour(new BottomUpBipairingSpanningTree<>(graph))));
+        for (int i = 0; i < restarts; ++i) {
+            long restartSeed = seed + i;
+            starts.add(new Start("Random " + restartSeed, () -> {
+                List<Vertex> tour = new ArrayList<>(graph.getVertices());
+                Collections.sort(tour);
+                Collections.shuffle(tour, new Random(restartSeed));
+                return tour;
+            }));
+        }
+
+        long budget = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + budget;
+        long stopAt = deadline - Math.min(STOP_GRACE_NANOS, budget / 4);
+        List<Future<Route>> futures = new ArrayList<>();
+        try {
+            for (Start start : starts) {
+                futures.add(executor.submit(start));
+            }
+            for (Future<Route> future : futures) {
+                try {
+                    future.get(stopAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    break;
+                } catch (ExecutionException e) {
+                    // rethrown below
+                }
+            }
+        } finally {
+            for (int i = 0; i < futures.size(); ++i) {
+                if (!starts.get(i).stop()) {
+                    futures.get(i).cancel(false);
+                }
+            }
+        }
+
+        Route best = null;
+        for (Future<Route> future : futures) {
+            Route route;
+            try {
+                route = future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (CancellationException | TimeoutException e) {
+                continue;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                if (cause instanceof Error) throw (Error) cause;
+                throw new IllegalStateException(cause);
+            }
+            if (route != null && (best == null || route.getLength() < best.getLength())) {
+                best = route;
+            }
+        }
+        if (best == null) {
+            throw new TimeoutException(String.format("no tour within %d %s", timeout, unit));
+        }
+        return best;
+    }
+
+    /**
+     * One start, which can be stopped without cancelling its future: a running improvement is interrupted and
+     * completes with its tour so far, and a start that has not begun yet is cancelled, or completes with {@code null}
+     * should it begin before that.
+     */
+    private class Start implements Callable<Route> {
+
+        private final String strategy;
+        private final Supplier<List<Vertex>> tour;
+        private Thread runner;
+        private boolean begun;
+        private boolean stopped;
+
+        Start(String strategy, Supplier<List<Vertex>> tour) {
+            this.strategy = strategy;
+            this.tour = tour;
+        }
+
+        @Override
+        public Route call() {
+            synchronized (this) {
+                if (stopped) return null;
+                runner = Thread.currentThread();
+                begun = true;
+            }
+            try {
+                List<Vertex> improved = improver.improve(tour.get());
+                return new Route(strategy, improved, graph.tourLength(improved));
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    if (stopped) {
+                        // the interrupt was ours, so it must not leak into the executor's next task
+                        Thread.interrupted();
+                    }
+                }
+            }
+        }
+
+        /** @return whether the start has begun, in which case its future completes with its tour */
+        synchronized boolean stop() {
+            stopped = true;
+            if (runner != null) {
+                runner.interrupt();
+            }
+            return begun;
+        }
+    }
+
+    public static class Route {
+
+        private final String strategy;
+        private final List<Vertex> tour;
+        private final double length;
+
+        public Route(String strategy, List<Vertex> tour, double length) {
+            this.strategy = strategy;
+            this.tour = Collections.unmodifiableList(tour);
+            this.length = length;
+        }
+
+        /** @return the name of the start the tour was improved from */
+        public String getStrategy() {
+            return strategy;
+        }
+
+        public List<Vertex> getTour() {
+            return tour;
+        }
+
+        public double getLength() {
+            return length;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.1f from %s", length, strategy);
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Subgraph;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+/**
+ * Thread-safe least recently used cache of tours over {@link Subgraph}s of one {@link DistanceGraph}. Entries are keyed
+ * by the vertex indices of the subgraph and its start port, so equal selections hit the same entry no matter in which
+ * order their vertices were given. The cache is bounded both by its number of entries and by the total number of
+ * vertices in the cached tours.
+ * <p>
+ * When the distances change, {@link #replaceGraph(DistanceGraph)} drops all entries; tours that were still being
+ * planned for the previous graph are returned to their callers but not cached.
+ */
+public class TourCache {
+
+    private final int maxEntries;
+    private final long maxVertices;
+    private final LinkedHashMap<Key, List<Vertex>> entries = new LinkedHashMap<>(16, .75f, true);
+    private DistanceGraph graph;
+    private long vertices;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TourCache(DistanceGraph graph, int maxEntries) {
+        this(graph, maxEntries, Long.MAX_VALUE);
+    }
+
+    /** @param maxVertices the limit for the total number of vertices in all cached tours */
+    public TourCache(DistanceGraph graph, int maxEntries, long maxVertices) {
+        if (maxEntries < 1 || maxVertices < 1) {
+            throw new IllegalArgumentException("the cache must hold at least one entry and vertex");
+        }
+        this.graph = graph;
+        this.maxEntries = maxEntries;
+        this.maxVertices = maxVertices;
+    }
+
+    /**
+     * @return the cached tour over the given subgraph, or the one {@code planner} creates for it, which is then cached;
+     *         the tour is unmodifiable
+     * @throws IllegalArgumentException if the subgraph is not one of the cache's graph
+     */
+    public List<Vertex> getTour(Subgraph subgraph, Function<? super Subgraph, List<Vertex>> planner) {
+        Key key = new Key(subgraph);
+        DistanceGraph planned;
+        synchronized (this) {
+            if (subgraph.getGraph() != graph) {
+                throw new IllegalArgumentException("the subgraph is not one of the cached graph");
+            }
+            List<Vertex> tour = entries.get(key);
+            if (tour != null) {
+                hits.increment();
+                return tour;
+            }
+            planned = graph;
+        }
+        misses.increment();
+        List<Vertex> tour = Collections.unmodifiableList(new ArrayList<>(planner.apply(subgraph)));
+        synchronized (this) {
+            if (graph == planned) {
+                List<Vertex> previous = entries.put(key, tour);
+                vertices += tour.size() - (previous == null ? 0 : previous.size());
+                evict();
+            }
+        }
+        return tour;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, List<Vertex>>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries || vertices > maxVertices && entries.size() > 1) {
+            vertices -= eldest.next().getValue().size();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /** drops all entries and caches tours over subgraphs of the given graph from now on */
+    public synchronized void replaceGraph(DistanceGraph graph) {
+        this.graph = graph;
+        invalidate();
+    }
+
+    public synchronized void invalidate() {
+        entries.clear();
+        vertices = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries, %d hits, %d misses, %d evictions", size(), getHits(), getMisses(),
+                getEvictions());
+    }
+
+    private static final class Key {
+
+        private final BitSet indices;
+        private final int start;
+        private final int hashCode;
+
+        Key(Subgraph subgraph) {
+            this.indices = subgraph.getIndices();
+            this.start = subgraph.getStart() == null ? -1 : subgraph.getStart().getIndex();
+            this.hashCode = 31 * indices.hashCode() + start;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key other = (Key) obj;
+            return start == other.start && indices.equals(other.indices);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package ch.patchcode.port_royale_3.routes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+/**
+ * Local search that shortens closed tours over a {@link DistanceGraph}, for example those built by
+ * {@link DistanceGraph#createTour(ch.patchcode.graphs.trees.Tree)}. The distances are read from the graph by vertex
+ * index, so each candidate move is evaluated in O(1), and each run builds lists of the k nearest neighbours of each
+ * vertex in O(n²) time and O(n·k) memory. Only moves that add an edge to one of the nearest neighbours are tried, and
+ * don't-look bits skip vertices whose surroundings have not changed since they were last found without an improving
+ * move.
+ * <p>
+ * Instances are immutable and may be shared between threads. An interrupted thread stops improving early and gets
+ * the tour found so far; its interrupt flag stays set.
+ */
+public class TourImprover {
+
+    public enum Neighbourhood {
+        /** replaces two edges by two others, reversing the path between them */
+        TWO_OPT,
+        /** moves a path of up to three vertices to another place in the tour, in either orientation */
+        OR_OPT,
+        /** tries {@link #TWO_OPT} and then {@link #OR_OPT} moves for each vertex */
+        OR_2OPT
+    }
+
+    private static final int DEFAULT_NEIGHBOURS = 10;
+    private static final int MAX_SEGMENT = 3;
+    private static final double EPSILON = 1e-9;
+    private static final int MOVES_PER_INTERRUPT_CHECK = 256;
+
+    private final DistanceGraph graph;
+    private final int neighbours;
+
+    public TourImprover(DistanceGraph graph) {
+        this(graph, DEFAULT_NEIGHBOURS);
+    }
+
+    /** @param neighbours how many nearest neighbours of each vertex are candidates for new edges */
+    public TourImprover(DistanceGraph graph, int neighbours) {
+        if (neighbours < 1) {
+            throw new IllegalArgumentException("at least one neighbour is needed, but got " + neighbours);
+        }
+        this.graph = graph;
+        this.neighbours = neighbours;
+    }
+
+    public List<Vertex> improve(List<Vertex> tour) {
+        return improve(tour, Neighbourhood.OR_2OPT);
+    }
+
+    /**
+     * @return a tour over the same vertices that is at most as long as the given one and cannot be shortened by a
+     *         single move of the given neighbourhood among the candidates; it starts with the same vertex
+     */
+    public List<Vertex> improve(List<Vertex> tour, Neighbourhood neighbourhood) {
+        Set<Vertex> distinct = new HashSet<>(tour);
+        if (distinct.size() != tour.size()) {
+            throw new IllegalArgumentException("a tour must not visit a vertex twice");
+        }
+        if (!graph.getVertices().containsAll(distinct)) {
+            throw new IllegalArgumentException("a tour must only visit vertices of the graph");
+        }
+        if (tour.size() < 4) {
+            return new ArrayList<>(tour);
+        }
+        Search search = new Search(tour.toArray(new Vertex[tour.size()]), Math.min(neighbours, tour.size() - 1));
+        search.run(neighbourhood != Neighbourhood.OR_OPT, neighbourhood != Neighbourhood.TWO_OPT);
+        return search.result();
+    }
+
+    /** the state of one improvement run, with vertices identified by their position in the given tour */
+    private class Search {
+
+        private final int n;
+        private final Vertex[] cities;
+        private final int[] index;
+        private final int k;
+        private final int[] nearest;
+
+        private final int[] order;
+        private final int[] pos;
+        private final int[] scratch;
+        private final int[] queue;
+        private final boolean[] queued;
+        private int head;
+        private int size;
+
+        Search(Vertex[] cities, int k) {
+            this.n = cities.length;
+            this.cities = cities;
+            this.k = k;
+            this.index = new int[n];
+            for (int i = 0; i < n; ++i) {
+                index[i] = cities[i].getIndex();
+            }
+            if ((long) n * k > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException(String.format("%d neighbours of %d vertices exceed the maximum size",
+                        k, n));
+            }
+            this.nearest = new int[n * k];
+            double[] nearestDistances = new double[k];
+            for (int i = 0; i < n; ++i) {
+                int found = 0;
+                for (int j = 0; j < n; ++j) {
+                    if (j == i) continue;
+                    double distance = d(i, j);
+                    if (found == k && distance >= nearestDistances[k - 1]) continue;
+                    int slot = found < k ? found++ : k - 1;
+                    while (slot > 0 && nearestDistances[slot - 1] > distance) {
+                        nearest[i * k + slot] = nearest[i * k + slot - 1];
+                        nearestDistances[slot] = nearestDistances[slot - 1];
+                        --slot;
+                    }
+                    nearest[i * k + slot] = j;
+                    nearestDistances[slot] = distance;
+                }
+            }
+
+            this.order = new int[n];
+            this.pos = new int[n];
+            this.scratch = new int[n];
+            this.queue = new int[n];
+            this.queued = new boolean[n];
+            for (int i = 0; i < n; ++i) {
+                order[i] = i;
+                pos[i] = i;
+                push(i);
+            }
+        }
+
+        void run(boolean twoOpt, boolean orOpt) {
+            for (int tries = 1; size > 0; ++tries) {
+                if (tries % MOVES_PER_INTERRUPT_CHECK == 0 && Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                int a = queue[head];
+                head = (head + 1) % n;
+                --size;
+                queued[a] = false;
+                if ((twoOpt && tryTwoOpt(a)) || (orOpt && tryOrOpt(a))) {
+                    push(a);
+                }
+            }
+        }
+
+        List<Vertex> result() {
+            List<Vertex> tour = new ArrayList<>(n);
+            for (int i = 0; i < n; ++i) {
+                tour.add(cities[order[(pos[0] + i) % n]]);
+            }
+            return tour;
+        }
+
+        private boolean tryTwoOpt(int a) {
+            for (int forward = 0; forward < 2; ++forward) {
+                int a2 = forward == 1 ? succ(a) : pred(a);
+                double removed = d(a, a2);
+                for (int m = 0; m < k; ++m) {
+                    int c = nearest[a * k + m];
+                    double g1 = removed - d(a, c);
+                    if (g1 <= EPSILON) break;
+                    int c2 = forward == 1 ? succ(c) : pred(c);
+                    if (c == a2 || c2 == a) continue;
+                    if (g1 + d(c, c2) - d(a2, c2) > EPSILON) {
+                        if (forward == 1) {
+                            reverse(pos[a2], pos[c]);
+                        } else {
+                            reverse(pos[a], pos[c2]);
+                        }
+                        push(a2);
+                        push(c);
+                        push(c2);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /** tries to move the paths of one to {@value #MAX_SEGMENT} vertices that start at {@code s1} */
+        private boolean tryOrOpt(int s1) {
+            for (int length = 1; length <= MAX_SEGMENT && length + 2 < n; ++length) {
+                int s2 = order[(pos[s1] + length - 1) % n];
+                int p = pred(s1);
+                int q = succ(s2);
+                double removed = d(p, s1) + d(s2, q) - d(p, q);
+                if (removed <= EPSILON) continue;
+                for (int end = 0; end < 2; ++end) {
+                    int s = end == 0 ? s1 : s2;
+                    for (int m = 0; m < k; ++m) {
+                        int c = nearest[s * k + m];
+                        if (removed - d(s, c) <= EPSILON) break;
+                        if (inSegment(c, s1, length)) continue;
+                        // c joins s either from before, making (pred(c), c) the gap, or after, making (c, succ(c)) it
+                        for (int side = 0; side < 2; ++side) {
+                            int u = side == 0 ? c : pred(c);
+                            int w = side == 0 ? succ(c) : c;
+                            if (inSegment(u, s1, length) || inSegment(w, s1, length)) continue;
+                            // the segment is put between u and w, with s next to c
+                            boolean reversed = (s == s1) == (c == w);
+                            int first = reversed ? s2 : s1;
+                            int last = reversed ? s1 : s2;
+                            double added = d(u, first) + d(last, w) - d(u, w);
+                            if (removed - added > EPSILON) {
+                                move(s1, length, u, reversed);
+                                push(p);
+                                push(q);
+                                push(s1);
+                                push(s2);
+                                push(u);
+                                push(w);
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean inSegment(int city, int s1, int length) {
+            return (pos[city] - pos[s1] + n) % n < length;
+        }
+
+        /** moves the path of {@code length} vertices starting at {@code s1} to behind {@code u} */
+        private void move(int s1, int length, int u, boolean reversed) {
+            int start = pos[s1];
+            int filled = 0;
+            for (int i = length; i < n; ++i) {
+                int city = order[(start + i) % n];
+                scratch[filled++] = city;
+                if (city == u) {
+                    for (int j = 0; j < length; ++j) {
+                        scratch[filled++] = order[(start + (reversed ? length - 1 - j : j)) % n];
+                    }
+                }
+            }
+            System.arraycopy(scratch, 0, order, 0, n);
+            for (int i = 0; i < n; ++i) {
+                pos[order[i]] = i;
+            }
+        }
+
+        /** reverses the path from position {@code i} forward to position {@code j}, or its complement if shorter */
+        private void reverse(int i, int j) {
+            int length = (j - i + n) % n + 1;
+            if (2 * length > n) {
+                int complementStart = (j + 1) % n;
+                j = (i - 1 + n) % n;
+                i = complementStart;
+                length = n - length;
+            }
+            for (int s = 0; s < length / 2; ++s) {
+                int ci = order[i];
+                int cj = order[j];
+                order[i] = cj;
+                order[j] = ci;
+                pos[cj] = i;
+                pos[ci] = j;
+                i = (i + 1) % n;
+                j = (j - 1 + n) % n;
+            }
+        }
+
+        private void push(int city) {
+            if (queued[city]) return;
+            queued[city] = true;
+            queue[(head + size) % n] = city;
+            ++size;
+        }
+
+        private int succ(int city) {
+            return order[(pos[city] + 1) % n];
+        }
+
+        private int pred(int city) {
+            return order[(pos[city] - 1 + n) % n];
+        }
+
+        private double d(int i, int j) {
+            return graph.getDistance(index[i], index[j]);
+        }
+    }
+}
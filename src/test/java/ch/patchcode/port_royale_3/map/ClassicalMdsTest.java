@@ -0,0 +1,89 @@
+package ch.patchcode.port_royale_3.map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import ch.patchcode.port_royale_3.routes.DistanceMatrixData;
+
+public class ClassicalMdsTest {
+
+    @Test
+    public void planarDistancesAreReproduced() {
+        Random random = new Random(3);
+        int size = 50;
+        double[] x = new double[size];
+        double[] y = new double[size];
+        List<String> places = new ArrayList<>();
+        for (int i = 0; i < size; ++i) {
+            x[i] = random.nextDouble() * 100;
+            y[i] = random.nextDouble() * 30;
+            places.add("Place " + i);
+        }
+        double[] triangle = new double[size * (size - 1) / 2];
+        for (int i = 1, k = 0; i < size; ++i) {
+            for (int j = 0; j < i; ++j) {
+                triangle[k++] = Math.hypot(x[i] - x[j], y[i] - y[j]);
+            }
+        }
+        DistanceMatrixData data = new DistanceMatrixData(places, triangle);
+
+        double[][] embedding = ClassicalMds.embed(data);
+
+        for (int i = 1; i < size; ++i) {
+            for (int j = 0; j < i; ++j) {
+                double distance = Math.hypot(embedding[0][i] - embedding[0][j], embedding[1][i] - embedding[1][j]);
+                assertThat(distance, closeTo(data.getDistance(i, j), 1e-6));
+            }
+        }
+    }
+
+    @Test
+    public void collinearPlacesCollapseTheSecondCoordinate() {
+        List<String> places = new ArrayList<>();
+        for (int i = 0; i < 4; ++i) {
+            places.add("Place " + i);
+        }
+        // places at 0, 1, 3 and 6 on a line
+        DistanceMatrixData data = new DistanceMatrixData(places, new double[] { 1, 3, 2, 6, 5, 3 });
+
+        double[][] embedding = ClassicalMds.embed(data);
+
+        for (int i = 0; i < 4; ++i) {
+            assertThat(embedding[1][i], closeTo(0., 1e-6));
+        }
+        assertThat(Math.abs(embedding[0][3] - embedding[0][0]), closeTo(6., 1e-6));
+    }
+
+    @Test
+    public void negativeEigenvaluesAreSkipped() {
+        // two groups of four places, centred at the origin, at x ±4 and y ±2, and at x ±2 and y ±1
+        double[] x = { 4, -4, 4, -4, 2, -2, 2, -2 };
+        double[] y = { 2, 2, -2, -2, 1, 1, -1, -1 };
+        List<String> places = new ArrayList<>();
+        for (int i = 0; i < x.length; ++i) {
+            places.add("Place " + i);
+        }
+        // adding 200 to the squared distances within each group adds an eigenvalue -300 along the group difference to
+        // B, and 100 to all others, so that the positive eigenvalues 80 of x and 20 of y become 180 and 120
+        double[] triangle = new double[x.length * (x.length - 1) / 2];
+        for (int i = 1, k = 0; i < x.length; ++i) {
+            for (int j = 0; j < i; ++j) {
+                double squared = (x[i] - x[j]) * (x[i] - x[j]) + (y[i] - y[j]) * (y[i] - y[j]);
+                triangle[k++] = Math.sqrt(squared + (i / 4 == j / 4 ? 200 : 0));
+            }
+        }
+
+        double[][] embedding = ClassicalMds.embed(new DistanceMatrixData(places, triangle));
+
+        for (int i = 0; i < x.length; ++i) {
+            assertThat(Math.abs(embedding[0][i]), closeTo(Math.abs(x[i]) * Math.sqrt(180. / 80), 1e-6));
+            assertThat(Math.abs(embedding[1][i]), closeTo(Math.abs(y[i]) * Math.sqrt(120. / 20), 1e-6));
+        }
+    }
+}
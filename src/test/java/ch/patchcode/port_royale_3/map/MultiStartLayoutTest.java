@@ -0,0 +1,61 @@
+package ch.patchcode.port_royale_3.map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.patchcode.port_royale_3.routes.DistanceCsvData;
+import ch.patchcode.port_royale_3.routes.DistanceGraph;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Edge;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+public class MultiStartLayoutTest {
+
+    private DistanceGraph graph;
+
+    @Before
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            graph = new DistanceGraph(new DistanceCsvData(is));
+        }
+    }
+
+    @Test
+    public void keepsTheLayoutWithTheLowestStress() throws InterruptedException {
+        long[] seeds = { 1L, 2L, 3L, 4L };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        WorldMap<Vertex, Edge> best;
+        try {
+            best = MultiStartLayout.best(executor, this::layout, seeds);
+        } finally {
+            executor.shutdown();
+        }
+
+        double lowest = Double.POSITIVE_INFINITY;
+        for (long seed : seeds) {
+            double stress = layout(seed).stress();
+            assertThat(best.stress(), lessThanOrEqualTo(stress));
+            lowest = Math.min(lowest, stress);
+        }
+        assertThat(best.stress(), closeTo(lowest, 0.));
+    }
+
+    private WorldMap<Vertex, Edge> layout(long seed) {
+        WorldMap<Vertex, Edge> map = new WorldMap<>(200., new Random(seed));
+        Vertex center = graph.getCentralVertex();
+        map.addFixed(center, 0, 0);
+        graph.getVertices().stream().sorted((a, b) -> a.getName().compareTo(b.getName()))
+                .filter(it -> !center.equals(it)).forEach(map::add);
+        map.rebalanceAll(0.01, WorldMap.Solver.MOMENTUM);
+        return map;
+    }
+}
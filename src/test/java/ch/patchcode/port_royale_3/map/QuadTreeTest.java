@@ -0,0 +1,89 @@
+package ch.patchcode.port_royale_3.map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class QuadTreeTest {
+
+    private static final int COUNT = 500;
+    private static final double SCALE = 10.;
+
+    private final double[] x = new double[COUNT];
+    private final double[] y = new double[COUNT];
+    private final DistanceTable targets = new DistanceTable();
+
+    @Before
+    public void setup() {
+        Random random = new Random(3);
+        double[] tx = new double[COUNT];
+        double[] ty = new double[COUNT];
+        for (int i = 0; i < COUNT; ++i) {
+            tx[i] = random.nextDouble() * 100;
+            ty[i] = random.nextDouble() * 100;
+            x[i] = SCALE * tx[i] + random.nextGaussian() * 20;
+            y[i] = SCALE * ty[i] + random.nextGaussian() * 20;
+            double[] row = new double[i];
+            for (int j = 0; j < i; ++j) {
+                row[j] = Math.hypot(tx[i] - tx[j], ty[i] - ty[j]);
+            }
+            targets.append(row);
+        }
+    }
+
+    @Test
+    public void withoutApproximationTheResidualIsExact() {
+        QuadTree tree = new QuadTree(targets, SCALE, 0.);
+        tree.build(x, y, COUNT);
+        for (int i = 0; i < COUNT; ++i) {
+            double[] expected = exactResidual(i);
+            double[] actualX = new double[1];
+            double[] actualY = new double[1];
+            tree.addResidual(i, actualX, actualY, 0);
+            assertThat(actualX[0], closeTo(expected[0], 1e-6 * (1 + Math.abs(expected[0]))));
+            assertThat(actualY[0], closeTo(expected[1], 1e-6 * (1 + Math.abs(expected[1]))));
+        }
+    }
+
+    @Test
+    public void approximationErrorShrinksWithTheta() {
+        double coarse = relativeError(0.5);
+        double fine = relativeError(0.2);
+        assertThat(fine, lessThan(0.15));
+        assertThat(fine, lessThan(coarse));
+    }
+
+    private double relativeError(double theta) {
+        QuadTree tree = new QuadTree(targets, SCALE, theta);
+        tree.build(x, y, COUNT);
+        double error = 0;
+        double norm = 0;
+        for (int i = 0; i < COUNT; ++i) {
+            double[] expected = exactResidual(i);
+            double[] actualX = new double[1];
+            double[] actualY = new double[1];
+            tree.addResidual(i, actualX, actualY, 0);
+            error += Math.hypot(actualX[0] - expected[0], actualY[0] - expected[1]);
+            norm += Math.hypot(expected[0], expected[1]);
+        }
+        return error / norm;
+    }
+
+    private double[] exactResidual(int i) {
+        double[] residual = new double[2];
+        for (int j = 0; j < COUNT; ++j) {
+            if (j == i) continue;
+            double dx = x[j] - x[i];
+            double dy = y[j] - y[i];
+            double f = 1. - targets.get(i, j) * SCALE / Math.hypot(dx, dy);
+            residual[0] += dx * f;
+            residual[1] += dy * f;
+        }
+        return residual;
+    }
+}
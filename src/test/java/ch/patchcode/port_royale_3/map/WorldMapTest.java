@@ -1,18 +1,35 @@
 package ch.patchcode.port_royale_3.map;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import ch.patchcode.port_royale_3.map.LayoutResult.StopReason;
 import ch.patchcode.port_royale_3.map.WorldMap.Pos;
+import ch.patchcode.port_royale_3.metrics.Metrics;
+import ch.patchcode.port_royale_3.metrics.MetricsSnapshot;
 import ch.patchcode.port_royale_3.routes.DistanceCsvData;
 import ch.patchcode.port_royale_3.routes.DistanceGraph;
 import ch.patchcode.port_royale_3.routes.DistanceGraph.Edge;
@@ -22,6 +39,8 @@ import ch.patchcode.port_royale_3.routes.PortRoyaleTriangleInequalityTest;
 public class WorldMapTest {
 
     private DistanceGraph graph;
+    private Vertex center;
+    private WorldMap<Vertex, Edge> map;
 
     @Before
     public void setup() throws IOException {
@@ -29,14 +48,41 @@ public class WorldMapTest {
                 .getResourceAsStream("port-royale-3-distances.csv")) {
             graph = new DistanceGraph(new DistanceCsvData(is));
         }
+        center = graph.getCentralVertex();
+        map = newMap();
+    }
+
+    /** @return a map with the central vertex fixed at the origin */
+    private WorldMap<Vertex, Edge> newMap() {
+        WorldMap<Vertex, Edge> result = new WorldMap<>(200.);
+        result.addFixed(center, 0, 0);
+        return result;
+    }
+
+    /** adds all ports that are not on the map yet at random positions */
+    private void addAllPorts(WorldMap<Vertex, Edge> target) {
+        for (Vertex node : graph.getVertices()) {
+            if (!target.contains(node)) target.add(node);
+        }
+    }
+
+    /** asserts that a full sequential rebalance moves no node by 0.01 or more */
+    private static void assertBalanced(WorldMap<Vertex, Edge> map, String reason) {
+        Map<Vertex, double[]> before = new HashMap<>();
+        for (Vertex node : map.vertices()) {
+            before.put(node, new double[] { map.getPosition(node).getX(), map.getPosition(node).getY() });
+        }
+        map.setForkJoinPool(null);
+        map.rebalanceAll(0.01);
+        for (Vertex node : map.vertices()) {
+            Pos p = map.getPosition(node);
+            assertThat(reason, Math.hypot(p.getX() - before.get(node)[0], p.getY() - before.get(node)[1]),
+                    lessThan(0.01));
+        }
     }
 
     @Test
     public void test() throws IOException {
-        WorldMap<Vertex, Edge> map = new WorldMap<>(200.);
-        Vertex center = graph.getCentralVertex();
-        map.addFixed(center, 0, 0);
-
         List<Vertex> otherNodesOrderedByDistance = center.getEdges().stream()
                 .sorted((a, b) -> Double.compare(a.getWeight(), b.getWeight()))
                 .flatMap(it -> it.getVertices().stream())
@@ -69,4 +115,179 @@ public class WorldMapTest {
         
     }
 
+    @Test
+    public void approximatedRebalanceEndsInAnExactEquilibrium() {
+        addAllPorts(map);
+        map.rebalanceAllApproximated(0.01, 0.5);
+
+        assertBalanced(map, "approximated");
+    }
+
+    @Test
+    public void parallelRebalanceEndsInAnExactEquilibrium() {
+        addAllPorts(map);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            map.setForkJoinPool(pool);
+            map.rebalanceAllApproximated(0.01, 0.5);
+            map.rebalanceAll(0.01);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertBalanced(map, "parallel");
+    }
+
+    @Test
+    public void everySolverEndsInAnExactEquilibrium() {
+        for (WorldMap.Solver solver : WorldMap.Solver.values()) {
+            WorldMap<Vertex, Edge> solved = newMap();
+            addAllPorts(solved);
+            LayoutResult result = solved.rebalanceAll(0.01, solver);
+            assertThat(result.getIterations(), greaterThan(0));
+            assertThat(result.getResidual(), lessThanOrEqualTo(0.01));
+
+            assertBalanced(solved, solver.name());
+        }
+    }
+
+    @Test
+    public void incrementalPlacementKeepsTheResidualWithinBudget() {
+        for (Vertex node : graph.getVertices()) {
+            if (map.contains(node)) continue;
+            LayoutResult result = map.addIncremental(node, 8, 0.01, 1.);
+            assertThat(result.getResidual(), lessThanOrEqualTo(1.));
+            assertThat(result.getResidual(), closeTo(map.residual(), 1e-6 * (1 + map.residual())));
+        }
+    }
+
+    @Test
+    public void incrementalPlacementKeepsTrackingTheResiduals() {
+        for (Vertex node : graph.getVertices()) {
+            if (map.contains(node)) continue;
+            LayoutResult result = map.addIncremental(node, 8, 0.01, Double.POSITIVE_INFINITY);
+            assertThat(result.getResidual(), closeTo(map.residual(), 1e-6 * (1 + map.residual())));
+        }
+        assertThat(map.fullTrackings(), is(1));
+    }
+
+    @Test
+    public void incrementalPlacementStopsWithinItsBudget() {
+        // the game distances are not Euclidean, so neither the local nor the global passes reach a residual of 0
+        LayoutResult result = null;
+        for (Vertex node : graph.getVertices()) {
+            if (map.contains(node)) continue;
+            result = map.addIncremental(node, 8, 0., 0., LayoutBudget.UNLIMITED.withMaxIterations(20));
+            assertThat(result.getIterations(), lessThanOrEqualTo(20));
+        }
+        assertThat(result.getStopReason(), is(StopReason.MAX_ITERATIONS));
+        assertThat(result.getResidual(), closeTo(map.residual(), 1e-6 * (1 + map.residual())));
+    }
+
+    @Test
+    public void sameSeedGivesTheSameLayoutWithAndWithoutPool() {
+        WorldMap<Vertex, Edge> sequential = seededMap(42L);
+        WorldMap<Vertex, Edge> parallel = seededMap(42L);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            parallel.setForkJoinPool(pool);
+            parallel.rebalanceAll(0.01, WorldMap.Solver.MOMENTUM);
+        } finally {
+            pool.shutdown();
+        }
+        sequential.rebalanceAll(0.01, WorldMap.Solver.MOMENTUM);
+
+        for (Vertex node : sequential.vertices()) {
+            assertThat(parallel.getPosition(node).getX(), closeTo(sequential.getPosition(node).getX(), 0.));
+            assertThat(parallel.getPosition(node).getY(), closeTo(sequential.getPosition(node).getY(), 0.));
+        }
+        assertThat(parallel.stress(), closeTo(sequential.stress(), 0.));
+    }
+
+    private WorldMap<Vertex, Edge> seededMap(long seed) {
+        WorldMap<Vertex, Edge> seeded = new WorldMap<>(200., new Random(seed));
+        seeded.addFixed(center, 0, 0);
+        graph.getVertices().stream().sorted((a, b) -> a.getName().compareTo(b.getName()))
+                .filter(it -> !center.equals(it)).forEach(seeded::add);
+        return seeded;
+    }
+
+    @Test
+    public void embeddedNodesStartCloserToTheLayoutThanRandomOnes() {
+        map.addAllEmbedded(graph.getVertices().stream().filter(it -> !center.equals(it))
+                .collect(Collectors.toList()));
+        WorldMap<Vertex, Edge> random = seededMap(42L);
+
+        assertThat(map.getPosition(center).getX(), closeTo(0., 0.));
+        assertThat(map.getPosition(center).getY(), closeTo(0., 0.));
+        assertThat(map.stress(), lessThan(random.stress() / 10));
+
+        map.rebalanceAll(0.01, WorldMap.Solver.MOMENTUM);
+        assertThat(map.residual(), lessThanOrEqualTo(0.01));
+    }
+
+    @Test
+    public void passesAreReportedToListenerAndMetrics() {
+        WorldMap<Vertex, Edge> seeded = seededMap(7L);
+        Metrics metrics = new Metrics();
+        List<Double> residuals = new ArrayList<>();
+        seeded.setMetrics(metrics);
+        seeded.setLayoutListener((iteration, residual) -> {
+            assertThat(iteration, is(residuals.size() + 1));
+            residuals.add(residual);
+        });
+
+        LayoutResult result = seeded.rebalanceAll(0.01, WorldMap.Solver.MOMENTUM);
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(residuals.size(), is(result.getIterations()));
+        assertThat(residuals.get(residuals.size() - 1), closeTo(result.getResidual(), 0.));
+        assertThat(snapshot.getCounter("worldmap.passes"), is((long) result.getIterations()));
+        assertThat(snapshot.getTimers().get("worldmap.rebalance").getCount(), is(1L));
+        assertThat(snapshot.getTimers().get("worldmap.rebalance").getTotalNanos(), is(result.getNanos()));
+    }
+
+    @Test
+    public void budgetStopsRunsThatCannotConverge() {
+        // the game distances are not Euclidean, so no layout gets the residual down to exactly 0
+        LayoutResult limited = seededMap(3L).rebalanceAll(0., WorldMap.Solver.RELAXATION,
+                LayoutBudget.UNLIMITED.withMaxIterations(50));
+        assertThat(limited.getStopReason(), is(StopReason.MAX_ITERATIONS));
+        assertThat(limited.getIterations(), is(50));
+
+        LayoutResult timedOut = seededMap(3L).rebalanceAll(0., WorldMap.Solver.MOMENTUM,
+                LayoutBudget.UNLIMITED.withTimeout(0, TimeUnit.MILLISECONDS));
+        assertThat(timedOut.getStopReason(), is(StopReason.TIMEOUT));
+        assertThat(timedOut.getIterations(), is(1));
+
+        WorldMap<Vertex, Edge> seeded = seededMap(3L);
+        AtomicInteger passes = new AtomicInteger();
+        seeded.setLayoutListener((iteration, residual) -> passes.incrementAndGet());
+        LayoutResult cancelled = seeded.rebalanceAllApproximated(0., 0.5,
+                LayoutBudget.UNLIMITED.withCancellation(() -> passes.get() >= 3));
+        assertThat(cancelled.getStopReason(), is(StopReason.CANCELLED));
+        assertThat(cancelled.getIterations(), is(3));
+
+        LayoutResult converged = seededMap(3L).rebalanceAll(0.01, WorldMap.Solver.MOMENTUM,
+                LayoutBudget.UNLIMITED.withMaxIterations(100_000));
+        assertThat(converged.isConverged(), is(true));
+        assertThat(converged.getResidual(), lessThanOrEqualTo(0.01));
+    }
+
+    @Test
+    public void fixedNodesStayAndPositionsFollowRebalancing() {
+        WorldMap<Vertex, Edge> shifted = new WorldMap<>(200.);
+        Vertex other = center.getEdges().iterator().next().getVertices().stream().filter(it -> it != center)
+                .findFirst().get();
+        shifted.addFixed(center, 10, 20);
+        shifted.add(other);
+        Pos position = shifted.getPosition(other);
+
+        shifted.rebalanceAll(0.01);
+
+        assertThat(shifted.getPosition(center).getX(), closeTo(10., 0.));
+        assertThat(shifted.getPosition(center).getY(), closeTo(20., 0.));
+        double distance = Math.hypot(position.getX() - 10., position.getY() - 20.) / 200.;
+        assertThat(distance, closeTo(graph.getDistance(center, other), 0.01));
+    }
 }
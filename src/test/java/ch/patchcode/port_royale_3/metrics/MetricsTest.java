@@ -0,0 +1,46 @@
+package ch.patchcode.port_royale_3.metrics;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class MetricsTest {
+
+    @Test
+    public void countersAndTimersAccumulate() {
+        Metrics metrics = new Metrics();
+        metrics.counter("lookups").increment();
+        metrics.counter("lookups").add(4);
+        metrics.timer("tour").record(3_000_000);
+        metrics.timer("tour").record(1_000_000);
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+
+        assertThat(snapshot.getCounter("lookups"), is(5L));
+        assertThat(snapshot.getCounter("unknown"), is(0L));
+        MetricsSnapshot.TimerValues tour = snapshot.getTimers().get("tour");
+        assertThat(tour.getCount(), is(2L));
+        assertThat(tour.getTotalNanos(), is(4_000_000L));
+        assertThat(tour.getMaxNanos(), is(3_000_000L));
+        assertThat(tour.getMeanNanos(), is(2_000_000.));
+        assertThat(snapshot.toString(), containsString("tour count 2, total 4.000 ms, mean 2.000 ms, max 3.000 ms"));
+    }
+
+    @Test
+    public void snapshotsAreSortedAndDoNotChangeLater() {
+        Metrics metrics = new Metrics();
+        metrics.counter("b").increment();
+        metrics.counter("a").increment();
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        metrics.counter("a").increment();
+
+        assertThat(snapshot.getCounters().keySet().toArray(), is(Arrays.asList("a", "b").toArray()));
+        assertThat(snapshot.getCounter("a"), is(1L));
+        assertThat(metrics.snapshot().getCounter("a"), is(2L));
+    }
+}
@@ -0,0 +1,96 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static java.util.function.Function.identity;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.patchcode.graphs.trees.Tree;
+import ch.patchcode.graphs.weighted.GreedyMinimumDistanceSpanningTree;
+import ch.patchcode.graphs.weighted.NeighbourDistanceScore;
+import ch.patchcode.graphs.weighted.TourShortcutOptimizer;
+import ch.patchcode.port_royale_3.routes.CompactDistanceGraph.Edge;
+import ch.patchcode.port_royale_3.routes.CompactDistanceGraph.Vertex;
+
+public class CompactDistanceGraphTest {
+
+    private CompactDistanceGraph graph;
+    private DistanceGraph reference;
+
+    @Before
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            DistanceMatrixData data = new DistanceCsvLoader().load(is);
+            graph = new CompactDistanceGraph(data);
+            reference = new DistanceGraph(data);
+        }
+    }
+
+    @Test
+    public void setsHaveTheSizesOfACompleteGraph() {
+        int n = graph.getVertices().size();
+        assertThat(n, equalTo(reference.getVertices().size()));
+        assertThat(graph.getEdges().size(), equalTo(n * (n - 1) / 2));
+        assertThat(new HashSet<>(graph.getEdges()).size(), equalTo(n * (n - 1) / 2));
+        for (Vertex vertex : graph.getVertices()) {
+            Set<Edge> edges = vertex.getEdges();
+            assertThat(edges.size(), equalTo(n - 1));
+            assertThat(new HashSet<>(edges).size(), equalTo(n - 1));
+            for (Edge edge : edges) {
+                assertThat(edge.getVertices().contains(vertex), equalTo(true));
+                assertThat(graph.getEdges().contains(edge), equalTo(true));
+                assertThat(edge.getOther(vertex).getEdges().contains(edge), equalTo(true));
+            }
+        }
+    }
+
+    @Test
+    public void weightsMatchDistanceGraph() {
+        Map<String, Vertex> byName = graph.getVertices().stream().collect(Collectors.toMap(Vertex::getName, identity()));
+        for (DistanceGraph.Edge expected : reference.getEdges()) {
+            Iterator<DistanceGraph.Vertex> ends = expected.getVertices().iterator();
+            Edge actual = graph.getEdge(byName.get(ends.next().getName()), byName.get(ends.next().getName()));
+            assertThat(actual.getWeight(), equalTo(expected.getWeight()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void edgeLookupRejectsForeignVertices() {
+        CompactDistanceGraph other = new CompactDistanceGraph(DistanceGenerator.plane(100).generate());
+        graph.getEdge(graph.getVertex(0), other.getVertex(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void distanceLookupRejectsForeignVertices() {
+        CompactDistanceGraph other = new CompactDistanceGraph(DistanceGenerator.plane(100).generate());
+        graph.getDistance(other.getVertex(99), graph.getVertex(0));
+    }
+
+    @Test
+    public void findMostCentralTortuga() {
+        NeighbourDistanceScore<Vertex, Edge> centralVertex = graph.getVertices().stream()
+                .map(NeighbourDistanceScore<Vertex, Edge>::new).sorted().findFirst().get();
+        assertThat(centralVertex.getVertex().getName(), equalTo("Tortuga"));
+        assertThat(centralVertex.getMeanDistance(), closeTo(2.49, 0.01));
+    }
+
+    @Test
+    public void createsTourOverAllVertices() {
+        Tree<Vertex> tree = new GreedyMinimumDistanceSpanningTree<>(graph);
+        List<Vertex> tour = new TourShortcutOptimizer<Vertex, Edge>(tree).createTour();
+        assertThat(tour, containsInAnyOrder(graph.getVertices().toArray()));
+    }
+}
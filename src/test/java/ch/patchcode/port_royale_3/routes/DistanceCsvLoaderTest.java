@@ -0,0 +1,77 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class DistanceCsvLoaderTest {
+
+    private final DistanceCsvLoader loader = new DistanceCsvLoader();
+
+    @Test
+    public void loadsSimpleDistances() throws IOException {
+        DistanceMatrixData data;
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("distances_simple.csv")) {
+            data = loader.load(is);
+        }
+        assertThat(data.getPlaces(), contains("1st Place", "2nd Place", "3rd Place"));
+        assertThat(data.getDistance(0, 1), equalTo(1.5));
+        assertThat(data.getDistance(0, 2), equalTo(2.0));
+        assertThat(data.getDistance(1, 2), equalTo(1.2));
+        assertThat(loader.getStatistics().getRows(), equalTo(3L));
+    }
+
+    @Test
+    public void matchesDistanceCsvDataOnGameData() throws IOException {
+        DistanceCsvData expected;
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            expected = new DistanceCsvData(is);
+        }
+
+        DistanceMatrixData actual;
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            actual = loader.load(is);
+        }
+
+        assertThat(actual.getPlaces(), equalTo(expected.getPlaces()));
+        for (String from : expected.getPlaces()) {
+            for (String to : expected.getPlaces()) {
+                if (from.equals(to)) continue;
+                assertThat(actual.getDistance(from, to), equalTo(expected.getDistance(from, to)));
+            }
+        }
+        assertThat(loader.getStatistics().getRows(), equalTo((long) expected.getPlaces().size()));
+        assertThat(loader.getStatistics().getBytesPerSecond(), greaterThan(0.));
+    }
+
+    @Test
+    public void acceptsWindowsLineBreaksAndUnusualNumbers() throws IOException {
+        DistanceMatrixData data = loader.load(stream("a\r\nb,1e1\r\nc, 0.25 ,-.5\r\n\r\n"));
+        assertThat(data.getPlaces(), contains("a", "b", "c"));
+        assertThat(data.getDistance(0, 1), equalTo(10.));
+        assertThat(data.getDistance(0, 2), equalTo(0.25));
+        assertThat(data.getDistance(1, 2), equalTo(-.5));
+    }
+
+    @Test(expected = DistanceCsvLoader.FormatException.class)
+    public void rejectsMissingDistances() throws IOException {
+        loader.load(stream("a\nb,1.0\nc,2.0\n"));
+    }
+
+    @Test(expected = DistanceCsvLoader.FormatException.class)
+    public void rejectsMalformedDistances() throws IOException {
+        loader.load(stream("a\nb,1.0.0\n"));
+    }
+
+    private static InputStream stream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
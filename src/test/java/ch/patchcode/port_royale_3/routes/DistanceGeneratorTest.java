@@ -0,0 +1,114 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class DistanceGeneratorTest {
+
+    @Test
+    public void csvLoadsAsTheGeneratedTable() throws IOException {
+        for (DistanceGenerator generator : Arrays.asList(DistanceGenerator.plane(120),
+                DistanceGenerator.archipelagos(120, 5).withSeed(7L), DistanceGenerator.plane(50).withDecimals(3),
+                DistanceGenerator.plane(50).unrounded())) {
+            DistanceMatrixData generated = generator.generate();
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            generator.writeCsv(out);
+
+            DistanceMatrixData loaded = new DistanceCsvLoader().load(new ByteArrayInputStream(out.toByteArray()));
+
+            assertThat(loaded.size(), equalTo(generated.size()));
+            for (int i = 0; i < generated.size(); ++i) {
+                assertThat(loaded.getPlace(i), equalTo(generated.getPlace(i)));
+                for (int j = 0; j < i; ++j) {
+                    assertThat(loaded.getDistance(i, j), equalTo(generated.getDistance(i, j)));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void equalSeedsGenerateEqualTables() {
+        DistanceMatrixData first = DistanceGenerator.archipelagos(80, 4).withSeed(3L).generate();
+        DistanceMatrixData second = DistanceGenerator.archipelagos(80, 4).withSeed(3L).generate();
+        DistanceMatrixData other = DistanceGenerator.archipelagos(80, 4).withSeed(4L).generate();
+
+        assertThat(second.getDistance(17, 42), equalTo(first.getDistance(17, 42)));
+        assertThat(other.getDistance(17, 42) == first.getDistance(17, 42), equalTo(false));
+    }
+
+    @Test
+    public void unroundedDistancesAreMetric() {
+        DistanceMatrixData data = DistanceGenerator.archipelagos(60, 3).unrounded().generate();
+        for (int i = 0; i < data.size(); ++i) {
+            for (int j = 0; j < data.size(); ++j) {
+                for (int k = 0; k < data.size(); ++k) {
+                    if (i == j || j == k || i == k) continue;
+                    assertThat(data.getDistance(i, j) + data.getDistance(j, k) - data.getDistance(i, k),
+                            greaterThanOrEqualTo(-1e-12));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void roundedDistancesHaveOneDecimalAndArePositive() {
+        DistanceMatrixData data = DistanceGenerator.plane(100).generate();
+        for (int i = 0; i < data.size(); ++i) {
+            for (int j = 0; j < i; ++j) {
+                double tenths = data.getDistance(i, j) * 10;
+                assertThat(Math.abs(tenths - Math.round(tenths)), lessThan(1e-9));
+                assertThat(data.getDistance(i, j), greaterThanOrEqualTo(.1));
+            }
+        }
+    }
+
+    @Test
+    public void archipelagosHaveCloserNeighboursThanThePlane() {
+        assertThat(meanNearestDistance(DistanceGenerator.archipelagos(200, 4).unrounded().generate()),
+                lessThan(meanNearestDistance(DistanceGenerator.plane(200).unrounded().generate())));
+    }
+
+    @Test
+    public void largeTablesAreStreamed() throws IOException {
+        long[] lines = new long[1];
+        OutputStream counter = new OutputStream() {
+            @Override
+            public void write(int b) {
+                if (b == '\n') ++lines[0];
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                for (int k = off; k < off + len; ++k) {
+                    write(b[k]);
+                }
+            }
+        };
+
+        DistanceGenerator.plane(10_000).writeCsv(counter);
+
+        assertThat(lines[0], equalTo(10_000L));
+    }
+
+    private static double meanNearestDistance(DistanceMatrixData data) {
+        double sum = 0;
+        for (int i = 0; i < data.size(); ++i) {
+            double nearest = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < data.size(); ++j) {
+                if (j != i) nearest = Math.min(nearest, data.getDistance(i, j));
+            }
+            sum += nearest;
+        }
+        return sum / data.size();
+    }
+}
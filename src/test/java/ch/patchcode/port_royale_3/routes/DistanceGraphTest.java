@@ -0,0 +1,281 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.hamcrest.number.OrderingComparison.greaterThan;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.patchcode.graphs.weighted.BottomUpBipairingSpanningTree;
+import ch.patchcode.graphs.weighted.GreedyMinimumDistanceSpanningTree;
+import ch.patchcode.graphs.weighted.TopDownBisectionSpanningTree;
+import ch.patchcode.port_royale_3.metrics.Metrics;
+import ch.patchcode.port_royale_3.metrics.MetricsSnapshot;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Edge;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Subgraph;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+public class DistanceGraphTest {
+
+    private DistanceCsvData data;
+
+    @Before
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            data = new DistanceCsvData(is);
+        }
+    }
+
+    @Test
+    public void edgeSetsAreConsistent() {
+        DistanceGraph graph = new DistanceGraph(data);
+        int n = graph.getVertices().size();
+        assertThat(graph.getEdges().size(), equalTo(n * (n - 1) / 2));
+        int iterated = 0;
+        for (Edge edge : graph.getEdges()) {
+            ++iterated;
+            for (Vertex vertex : edge.getVertices()) {
+                assertThat(vertex.getEdges().contains(edge), equalTo(true));
+            }
+        }
+        assertThat(iterated, equalTo(n * (n - 1) / 2));
+        for (Vertex vertex : graph.getVertices()) {
+            assertThat(vertex.getEdges().size(), equalTo(n - 1));
+            assertThat(vertex.getEdges().stream().filter(graph.getEdges()::contains).count(), equalTo(n - 1L));
+        }
+    }
+
+    @Test
+    public void edgeLookupFindsTheEdgeBetweenTwoVertices() {
+        DistanceGraph graph = new DistanceGraph(data);
+        for (Vertex a : graph.getVertices()) {
+            for (Edge expected : a.getEdges()) {
+                Vertex b = expected.getVertices().stream().filter(it -> it != a).findFirst().get();
+                assertThat(graph.getEdge(a, b), sameInstance(expected));
+                assertThat(graph.getEdge(b, a), sameInstance(expected));
+                assertThat(graph.getDistance(a, b), equalTo(data.getDistance(a.getName(), b.getName())));
+            }
+            assertThat(graph.getDistance(a, a), equalTo(0.));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void edgeLookupRejectsForeignVertices() {
+        DistanceGraph graph = new DistanceGraph(data);
+        Vertex foreign = new DistanceGraph(data).getVertices().iterator().next();
+        graph.getEdge(graph.getVertices().iterator().next(), foreign);
+    }
+
+    @Test
+    public void tourLengthIsTheClosedTourLength() {
+        DistanceGraph graph = new DistanceGraph(data);
+        List<Vertex> tour = new ArrayList<>(graph.getVertices());
+        Collections.shuffle(tour, new Random(7));
+        double expected = 0;
+        for (int i = 0; i < tour.size(); ++i) {
+            expected += data.getDistance(tour.get(i).getName(), tour.get((i + 1) % tour.size()).getName());
+        }
+        assertThat(graph.tourLength(tour), closeTo(expected, 1e-9));
+        assertThat(graph.tourLength(tour.subList(0, 1)), equalTo(0.));
+    }
+
+    @Test
+    public void metricsCountLookupsAndTimeTours() {
+        DistanceGraph graph = new DistanceGraph(data);
+        Metrics metrics = new Metrics();
+        graph.setMetrics(metrics);
+        List<Vertex> vertices = new ArrayList<>(graph.getVertices());
+
+        graph.getEdge(vertices.get(0), vertices.get(1));
+        graph.getDistance(vertices.get(1), vertices.get(2));
+        graph.tourLength(vertices);
+        List<Vertex> tour = graph.createTour(new GreedyMinimumDistanceSpanningTree<>(graph));
+
+        MetricsSnapshot snapshot = metrics.snapshot();
+        assertThat(snapshot.getCounter("distancegraph.edge.lookups"), equalTo(2L + vertices.size()));
+        assertThat(snapshot.getTimers().get("distancegraph.tour").getCount(), equalTo(1L));
+        assertThat(tour.size(), equalTo(vertices.size()));
+    }
+
+    @Test
+    public void sortedEdgesFollowWeightThenVertexNames() {
+        DistanceGraph graph = new DistanceGraph(data);
+        Comparator<Edge> byWeightThenNames = Comparator.<Edge> comparingDouble(Edge::getWeight)
+                .thenComparing(edge -> sortedNames(edge).get(0)).thenComparing(edge -> sortedNames(edge).get(1));
+
+        List<Edge> expected = new ArrayList<>(graph.getEdges());
+        expected.sort(byWeightThenNames);
+
+        assertThat(graph.getSortedEdges(), equalTo(expected));
+        assertThat(new HashSet<>(graph.getEdges()), equalTo(new HashSet<>(expected)));
+        assertThat(graph.getSortedEdges(), sameInstance(graph.getSortedEdges()));
+        for (int i = 1; i < expected.size(); ++i) {
+            assertThat(expected.get(i - 1).compareTo(expected.get(i)), lessThan(0));
+            assertThat(expected.get(i).compareTo(expected.get(i - 1)), greaterThan(0));
+        }
+    }
+
+    @Test
+    public void edgesIterateInTheSortedOrder() {
+        DistanceGraph graph = new DistanceGraph(data);
+
+        assertThat(new ArrayList<>(graph.getEdges()), equalTo(graph.getSortedEdges()));
+    }
+
+    @Test
+    public void spanningTreeBuildersFindTheEdgesPresorted() {
+        DistanceGraph graph = new DistanceGraph(data);
+        List<Vertex> all = new ArrayList<>(graph.getVertices());
+        Collections.sort(all);
+        Subgraph subgraph = graph.subgraph(all.subList(10, 50));
+
+        // the builders sort by weight alone, which on presorted input takes a single pass without moving any edge
+        for (Set<Edge> edges : Arrays.asList(graph.getEdges(), subgraph.getEdges())) {
+            AtomicInteger comparisons = new AtomicInteger();
+            List<Edge> sorted = new ArrayList<>(edges);
+            sorted.sort((a, b) -> {
+                comparisons.incrementAndGet();
+                return Double.compare(a.getWeight(), b.getWeight());
+            });
+            assertThat(sorted, equalTo(new ArrayList<>(edges)));
+            assertThat(comparisons.get(), equalTo(edges.size() - 1));
+        }
+        assertThat(new ArrayList<>(subgraph.getEdges()), equalTo(subgraph.getSortedEdges()));
+    }
+
+    @Test
+    public void spanningTreeToursOfTheGameDataKeepTheirLength() {
+        // the spanning tree builders resolve equal weights in the iteration order of the edges, which this pins down
+        DistanceGraph graph = new DistanceGraph(data);
+
+        assertThat(graph.tourLength(graph.createTour(new GreedyMinimumDistanceSpanningTree<>(graph))),
+                closeTo(50.5, 1e-9));
+        assertThat(graph.tourLength(graph.createTour(new TopDownBisectionSpanningTree<>(graph))), closeTo(50.5, 1e-9));
+        assertThat(graph.tourLength(graph.createTour(new BottomUpBipairingSpanningTree<>(graph))),
+                closeTo(50.5, 1e-9));
+    }
+
+    @Test
+    public void edgesOfOtherGraphsCompareByWeightThenVertexNames() {
+        List<Edge> own = new DistanceGraph(data).getSortedEdges();
+        List<Edge> other = new DistanceGraph(data).getSortedEdges();
+
+        for (int i = 1; i < own.size(); ++i) {
+            assertThat(own.get(i).compareTo(other.get(i)), equalTo(0));
+            assertThat(own.get(i - 1).compareTo(other.get(i)), lessThan(0));
+            assertThat(own.get(i).compareTo(other.get(i - 1)), greaterThan(0));
+        }
+    }
+
+    @Test
+    public void parallelBuildEqualsSequentialBuild() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            assertThat(describe(new DistanceGraph(data, pool)), equalTo(describe(new DistanceGraph(data))));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void edgesOfALargerGraphAreNotContained() {
+        DistanceGraph graph = new DistanceGraph(data);
+        DistanceGraph larger = new DistanceGraph(DistanceGenerator.plane(100).generate());
+        List<Vertex> vertices = new ArrayList<>(larger.getVertices());
+        vertices.sort(Comparator.comparingInt(Vertex::getIndex));
+        Edge foreign = larger.getEdge(vertices.get(98), vertices.get(99));
+
+        assertThat(graph.getEdges().contains(foreign), equalTo(false));
+        for (Vertex vertex : graph.getVertices()) {
+            assertThat(vertex.getEdges().contains(foreign), equalTo(false));
+        }
+    }
+
+    private static List<String> sortedNames(Edge edge) {
+        return edge.getVertices().stream().map(Vertex::getName).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    public void subgraphSharesTheVerticesAndEdgesAmongTheSelection() {
+        DistanceGraph graph = new DistanceGraph(data);
+        List<Vertex> all = new ArrayList<>(graph.getVertices());
+        Collections.sort(all);
+        List<Vertex> selection = all.subList(5, 15);
+
+        Subgraph subgraph = graph.subgraph(selection);
+
+        assertThat(subgraph.getVertices(), equalTo(new HashSet<>(selection)));
+        assertThat(subgraph.getVertices().contains(all.get(0)), equalTo(false));
+        assertThat(subgraph.getEdges().size(), equalTo(45));
+        List<Edge> expected = graph.getSortedEdges().stream()
+                .filter(edge -> selection.containsAll(edge.getVertices())).collect(Collectors.toList());
+        assertThat(subgraph.getSortedEdges(), equalTo(expected));
+        assertThat(new HashSet<>(subgraph.getEdges()), equalTo(new HashSet<>(expected)));
+        assertThat(subgraph.getEdges().contains(graph.getEdge(all.get(0), all.get(5))), equalTo(false));
+    }
+
+    @Test
+    public void spanningTreesOfASubgraphGiveToursFromItsStart() {
+        DistanceGraph graph = new DistanceGraph(data);
+        List<Vertex> all = new ArrayList<>(graph.getVertices());
+        Collections.sort(all);
+        List<Vertex> selection = all.subList(20, 30);
+        Vertex start = selection.get(7);
+
+        Subgraph subgraph = graph.subgraph(selection, start);
+
+        for (List<Vertex> tour : Arrays.asList(
+                subgraph.createTour(new GreedyMinimumDistanceSpanningTree<>(subgraph)),
+                subgraph.createTour(new TopDownBisectionSpanningTree<>(subgraph)),
+                subgraph.createTour(new BottomUpBipairingSpanningTree<>(subgraph)))) {
+            assertThat(tour.size(), equalTo(selection.size()));
+            assertThat(new HashSet<>(tour), equalTo(new HashSet<>(selection)));
+            assertThat(tour.get(0), sameInstance(start));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subgraphRejectsAStartOutsideTheSelection() {
+        DistanceGraph graph = new DistanceGraph(data);
+        List<Vertex> all = new ArrayList<>(graph.getVertices());
+        Collections.sort(all);
+        graph.subgraph(all.subList(0, 5), all.get(5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subgraphRejectsForeignVertices() {
+        DistanceGraph graph = new DistanceGraph(data);
+        Vertex foreign = new DistanceGraph(data).getVertices().iterator().next();
+        graph.subgraph(Arrays.asList(foreign));
+    }
+
+    private static Map<String, Double> describe(DistanceGraph graph) {
+        Map<String, Double> result = new TreeMap<>();
+        for (Edge edge : graph.getEdges()) {
+            Iterator<Vertex> vertices = edge.getVertices().stream().sorted().iterator();
+            result.put(vertices.next().getName() + "|" + vertices.next().getName(), edge.getWeight());
+        }
+        return result;
+    }
+}
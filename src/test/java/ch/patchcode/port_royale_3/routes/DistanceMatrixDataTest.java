@@ -0,0 +1,84 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsIterableContainingInAnyOrder.containsInAnyOrder;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNull.nullValue;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DistanceMatrixDataTest {
+
+    private DistanceMatrixData data;
+
+    @Before
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("distances_simple.csv")) {
+            data = DistanceMatrixData.copyOf(new DistanceCsvData(is));
+        }
+    }
+
+    @Test
+    public void allPlacesArePresent() {
+        assertThat(data.getPlaces(), containsInAnyOrder("1st Place", "2nd Place", "3rd Place"));
+    }
+
+    @Test
+    public void allDistancesAreCorrect() {
+        assertThat(data.getDistance("1st Place", "2nd Place"), closeTo(1.5, 0.01));
+        assertThat(data.getDistance("1st Place", "3rd Place"), closeTo(2.0, 0.01));
+        assertThat(data.getDistance("2nd Place", "1st Place"), closeTo(1.5, 0.01));
+        assertThat(data.getDistance("2nd Place", "3rd Place"), closeTo(1.2, 0.01));
+        assertThat(data.getDistance("3rd Place", "1st Place"), closeTo(2.0, 0.01));
+        assertThat(data.getDistance("3rd Place", "2nd Place"), closeTo(1.2, 0.01));
+    }
+
+    @Test
+    public void indexedDistancesMatchNamedDistances() {
+        for (int i = 0; i < data.size(); ++i) {
+            assertThat(data.indexOf(data.getPlace(i)), equalTo(i));
+            assertThat(data.getDistance(i, i), equalTo(0.));
+            for (int j = 0; j < data.size(); ++j) {
+                if (i == j) continue;
+                assertThat(data.getDistance(i, j), equalTo(data.getDistance(data.getPlace(i), data.getPlace(j))));
+                assertThat(data.getDistance(i, j), equalTo(data.getDistance(j, i)));
+            }
+        }
+    }
+
+    @Test
+    public void unknownPlacesHaveNoIndex() {
+        assertThat(data.indexOf("Atlantis"), equalTo(-1));
+        assertThat(data.getDistance("Atlantis", "1st Place"), nullValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTriangleOfWrongSize() {
+        new DistanceMatrixData(Arrays.asList("a", "b", "c"), new double[2]);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsNegativeIndices() {
+        // without the check, this would read the distance between the places 1 and 0
+        data.getDistance(2, -1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsIndicesBeyondThePlaces() {
+        data.getDistance(0, data.size());
+    }
+
+    @Test
+    public void distancesAreCopied() {
+        double[] triangle = { 1., 2., 3. };
+        DistanceMatrixData copy = new DistanceMatrixData(Arrays.asList("a", "b", "c"), triangle);
+        triangle[0] = 4.;
+        assertThat(copy.getDistance(0, 1), equalTo(1.));
+    }
+}
@@ -0,0 +1,139 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import ch.patchcode.port_royale_3.routes.DistanceValidator.Kind;
+import ch.patchcode.port_royale_3.routes.DistanceValidator.Report;
+import ch.patchcode.port_royale_3.routes.DistanceValidator.Violation;
+
+public class DistanceValidatorTest {
+
+    // distances are rounded to one digit, plus some small rounding error
+    private static final double EPS = 0.1 + 0.0000001;
+
+    @Test
+    public void gameDistancesAreMetricUpToTheirRounding() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            DistanceCsvData data = new DistanceCsvData(is);
+
+            Report report = new DistanceValidator(EPS, 100).validate(data);
+
+            assertThat(report.toString(), report.isValid(), equalTo(true));
+            assertThat(report.getPlaces(), equalTo(data.getPlaces().size()));
+        }
+    }
+
+    @Test
+    public void detourShorterThanTheDistanceIsReported() {
+        DistanceMatrixData data = new DistanceMatrixData(Arrays.asList("A", "B", "C"), new double[] { 1., 3., 1. });
+
+        Report report = new DistanceValidator(1e-9, 10).validate(data);
+
+        assertThat(report.getViolations().size(), equalTo(1));
+        Violation violation = report.getViolations().get(0);
+        assertThat(violation.getKind(), equalTo(Kind.TRIANGLE));
+        assertThat(violation.getFrom(), equalTo(0));
+        assertThat(violation.getVia(), equalTo(1));
+        assertThat(violation.getTo(), equalTo(2));
+        assertThat(violation.getExcess(), closeTo(1., 1e-12));
+        assertThat(new DistanceValidator(1., 10).validate(data).isValid(), equalTo(true));
+    }
+
+    @Test
+    public void missingNegativeAndAsymmetricDistancesAreReported() {
+        Map<String, Double> distances = new HashMap<>();
+        distances.put("A-B", 1.);
+        distances.put("B-A", 1.);
+        distances.put("A-C", -1.);
+        distances.put("C-A", -1.);
+        distances.put("B-C", 1.);
+        distances.put("C-B", 1.5);
+        distances.put("A-D", 1.);
+        distances.put("D-A", 1.);
+        distances.put("B-D", 1.);
+        distances.put("D-B", 1.);
+        DistanceData data = new DistanceData() {
+            @Override
+            public Set<String> getPlaces() {
+                return new LinkedHashSet<>(Arrays.asList("A", "B", "C", "D"));
+            }
+
+            @Override
+            public Double getDistance(String fromPlace, String toPlace) {
+                return distances.get(fromPlace + "-" + toPlace);
+            }
+        };
+
+        Report report = new DistanceValidator(.1, 10).validate(data);
+
+        // the negative distance also makes detours via C shorter than direct distances
+        assertThat(report.getViolations().stream().filter(it -> it.getKind() != Kind.TRIANGLE)
+                .map(it -> it.getKind() + " " + it.getFrom() + "-" + it.getTo()).collect(Collectors.toList()),
+                equalTo(Arrays.asList("MISSING 2-3", "NEGATIVE 0-2", "ASYMMETRIC 1-2")));
+        assertThat(report.isTruncated(), equalTo(false));
+    }
+
+    @Test
+    public void validationStopsAtTheMaximumNumberOfViolations() {
+        DistanceMatrixData data = DistanceGenerator.plane(200).unrounded().generate();
+        double[] triangle = new double[DistanceMatrixData.triangleSize(200)];
+        for (int i = 0, k = 0; i < 200; ++i) {
+            for (int j = 0; j < i; ++j) {
+                triangle[k++] = data.getDistance(i, j) * data.getDistance(i, j);
+            }
+        }
+        DistanceMatrixData squared = new DistanceMatrixData(Arrays.asList(data.getPlaces().toArray(new String[0])),
+                triangle);
+
+        Report report = new DistanceValidator(0., 5).validate(squared);
+
+        assertThat(report.getViolations().size(), equalTo(5));
+        assertThat(report.isTruncated(), equalTo(true));
+    }
+
+    @Test
+    public void parallelValidationFindsTheSameViolations() {
+        DistanceMatrixData data = DistanceGenerator.archipelagos(300, 6).withDecimals(0).generate();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        Report sequential = new DistanceValidator(0., Integer.MAX_VALUE).validate(data);
+        Report parallel = new DistanceValidator(0., Integer.MAX_VALUE, pool).validate(data);
+        Report unrounded = new DistanceValidator(1e-9, 1, pool)
+                .validate(DistanceGenerator.plane(300).unrounded().generate());
+        pool.shutdown();
+
+        assertThat(sequential.isValid(), equalTo(false));
+        assertThat(parallel.toString(), equalTo(sequential.toString()));
+        assertThat(unrounded.isValid(), equalTo(true));
+    }
+
+    @Test
+    public void truncatedParallelReportsEqualSequentialOnes() {
+        DistanceMatrixData data = DistanceGenerator.archipelagos(300, 6).withDecimals(0).generate();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        for (int maxViolations : new int[] { 1, 10, 100 }) {
+            Report sequential = new DistanceValidator(0., maxViolations).validate(data);
+            Report parallel = new DistanceValidator(0., maxViolations, pool).validate(data);
+
+            assertThat(sequential.isTruncated(), equalTo(true));
+            assertThat(sequential.getViolations().size(), equalTo(maxViolations));
+            assertThat(parallel.toString(), equalTo(sequential.toString()));
+        }
+        pool.shutdown();
+    }
+}
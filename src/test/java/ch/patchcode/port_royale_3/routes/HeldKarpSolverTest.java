@@ -0,0 +1,114 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.hamcrest.number.OrderingComparison.greaterThanOrEqualTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+import ch.patchcode.port_royale_3.routes.HeldKarpSolver.TooLargeException;
+
+public class HeldKarpSolverTest {
+
+    private DistanceGraph graph;
+    private List<Vertex> ports;
+
+    @Before
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            graph = new DistanceGraph(new DistanceCsvData(is));
+        }
+        ports = new ArrayList<>(graph.getVertices());
+        Collections.sort(ports);
+    }
+
+    @Test
+    public void solutionIsAsShortAsTheBestPermutation() {
+        List<Vertex> subset = ports.subList(0, 8);
+
+        List<Vertex> tour = new HeldKarpSolver(graph).solve(subset);
+
+        assertThat(new HashSet<>(tour), equalTo(new HashSet<>(subset)));
+        assertThat(tour.get(0), sameInstance(subset.get(0)));
+        List<Vertex> rest = new ArrayList<>(subset.subList(1, subset.size()));
+        assertThat(graph.tourLength(tour), closeTo(shortest(subset.get(0), rest, 0), 1e-9));
+    }
+
+    @Test
+    public void improvedToursAreNeverShorterThanTheOptimum() {
+        HeldKarpSolver solver = new HeldKarpSolver(graph);
+        TourImprover improver = new TourImprover(graph);
+        Random random = new Random(3);
+        for (int run = 0; run < 10; ++run) {
+            List<Vertex> subset = new ArrayList<>(ports);
+            Collections.shuffle(subset, random);
+            subset = subset.subList(0, 12);
+
+            double optimum = graph.tourLength(solver.solve(subset));
+
+            assertThat(graph.tourLength(improver.improve(subset)), greaterThanOrEqualTo(optimum - 1e-9));
+        }
+    }
+
+    @Test
+    public void parallelAndSinglePrecisionTablesFindTheSameLength() {
+        List<Vertex> subset = ports.subList(10, 26);
+
+        ForkJoinPool pool = new ForkJoinPool(2);
+        double sequential = graph.tourLength(new HeldKarpSolver(graph).solve(subset));
+        double parallel = graph.tourLength(new HeldKarpSolver(graph, pool, Long.MAX_VALUE).solve(subset));
+        pool.shutdown();
+        double single = graph.tourLength(new HeldKarpSolver(graph, null,
+                HeldKarpSolver.tableEntries(subset.size()) * Float.BYTES).solve(subset));
+
+        assertThat(parallel, equalTo(sequential));
+        assertThat(single, closeTo(sequential, 1e-3));
+    }
+
+    @Test(expected = TooLargeException.class)
+    public void tooManyPortsAreRejected() {
+        new HeldKarpSolver(graph).solve(ports.subList(0, HeldKarpSolver.MAX_PORTS + 1));
+    }
+
+    @Test(expected = TooLargeException.class)
+    public void tablesBeyondTheMemoryLimitAreRejected() {
+        new HeldKarpSolver(graph, null, 1 << 10).solve(ports.subList(0, 12));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicatePortsAreRejected() {
+        new HeldKarpSolver(graph).solve(
+                Arrays.asList(ports.get(0), ports.get(1), ports.get(2), ports.get(3), ports.get(1)));
+    }
+
+    /** @return the shortest closed tour length from {@code start} through the permutations of {@code rest[k..]} */
+    private double shortest(Vertex start, List<Vertex> rest, int k) {
+        if (k == rest.size()) {
+            List<Vertex> tour = new ArrayList<>();
+            tour.add(start);
+            tour.addAll(rest);
+            return graph.tourLength(tour);
+        }
+        double best = Double.POSITIVE_INFINITY;
+        for (int i = k; i < rest.size(); ++i) {
+            Collections.swap(rest, k, i);
+            best = Math.min(best, shortest(start, rest, k + 1));
+            Collections.swap(rest, k, i);
+        }
+        return best;
+    }
+}
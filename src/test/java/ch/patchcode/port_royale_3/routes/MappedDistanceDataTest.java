@@ -0,0 +1,140 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.collection.IsIterableContainingInOrder.contains;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.StringContains.containsString;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ch.patchcode.port_royale_3.routes.DistanceSnapshot.Precision;
+
+public class MappedDistanceDataTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DistanceMatrixData data;
+
+    @Before
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            data = new DistanceCsvLoader().load(is);
+        }
+    }
+
+    @Test
+    public void doubleSnapshotIsExact() throws IOException {
+        MappedDistanceData mapped = writeAndOpen(Precision.DOUBLE);
+
+        assertThat(mapped.getPlaces(), contains(data.getPlaces().toArray()));
+        for (int i = 0; i < data.size(); ++i) {
+            assertThat(mapped.indexOf(data.getPlace(i)), equalTo(i));
+            for (int j = 0; j < data.size(); ++j) {
+                assertThat(mapped.getDistance(i, j), equalTo(data.getDistance(i, j)));
+            }
+        }
+    }
+
+    @Test
+    public void floatSnapshotIsCloseAndSmaller() throws IOException {
+        MappedDistanceData mapped = writeAndOpen(Precision.FLOAT);
+
+        for (String from : data.getPlaces()) {
+            for (String to : data.getPlaces()) {
+                assertThat(mapped.getDistance(from, to), closeTo(data.getDistance(from, to), 1e-6));
+            }
+        }
+        assertThat(Files.size(snapshot(Precision.FLOAT)), lessThan(Files.size(snapshot(Precision.DOUBLE))));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        Path path = folder.newFile("other.bin").toPath();
+        Files.write(path, "Nombre de Dios\nHavana,0.4\n".getBytes("UTF-8"));
+        MappedDistanceData.open(path);
+    }
+
+    @Test
+    public void rejectsUnsupportedVersions() throws IOException {
+        assertRejected(corrupted(4, 2), "unsupported version 2");
+    }
+
+    @Test
+    public void rejectsUnsupportedDistanceSizes() throws IOException {
+        assertRejected(corrupted(8, 2), "unsupported distance size 2");
+    }
+
+    @Test
+    public void rejectsNegativePlaceCounts() throws IOException {
+        assertRejected(corrupted(12, -1), "corrupt header");
+    }
+
+    @Test
+    public void rejectsCorruptNameLengths() throws IOException {
+        assertRejected(corrupted(DistanceSnapshot.HEADER_SIZE, Integer.MAX_VALUE), "corrupt name table at place 0");
+    }
+
+    @Test
+    public void rejectsTruncatedFiles() throws IOException {
+        Path path = writeSnapshot();
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+        assertRejected(path, "but its header requires " + bytes.length);
+    }
+
+    @Test
+    public void rejectsTrailingBytes() throws IOException {
+        Path path = writeSnapshot();
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length + 8));
+        assertRejected(path, "but its header requires " + bytes.length);
+    }
+
+    private Path writeSnapshot() throws IOException {
+        DistanceSnapshot.write(data, snapshot(Precision.DOUBLE), Precision.DOUBLE);
+        return snapshot(Precision.DOUBLE);
+    }
+
+    /** @return a snapshot with the int at {@code offset} replaced by {@code value} */
+    private Path corrupted(int offset, int value) throws IOException {
+        Path path = writeSnapshot();
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer.wrap(bytes).putInt(offset, value);
+        Files.write(path, bytes);
+        return path;
+    }
+
+    private static void assertRejected(Path path, String message) {
+        try {
+            MappedDistanceData.open(path);
+            fail("opened " + path);
+        } catch (IOException e) {
+            assertThat(e.getMessage(), containsString(message));
+        }
+    }
+
+    private MappedDistanceData writeAndOpen(Precision precision) throws IOException {
+        for (Precision each : Precision.values()) {
+            DistanceSnapshot.write(data, snapshot(each), each);
+        }
+        return MappedDistanceData.open(snapshot(precision));
+    }
+
+    private Path snapshot(Precision precision) {
+        return folder.getRoot().toPath().resolve(precision + ".bin");
+    }
+}
@@ -0,0 +1,129 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import ch.patchcode.port_royale_3.routes.MetricClosure.Correction;
+import ch.patchcode.port_royale_3.routes.MetricClosure.Result;
+
+public class MetricClosureTest {
+
+    @Test
+    public void distanceLongerThanADetourIsShortened() {
+        DistanceMatrixData data = new DistanceMatrixData(Arrays.asList("A", "B", "C"), new double[] { 1., 3., 1. });
+
+        Result result = new MetricClosure().close(data);
+
+        assertThat(result.getData().getDistance(0, 2), closeTo(2., 0.));
+        assertThat(result.getData().getDistance(0, 1), closeTo(1., 0.));
+        assertThat(result.getCorrections().size(), equalTo(1));
+        Correction correction = result.getCorrections().get(0);
+        assertThat(correction.getFrom(), equalTo("C"));
+        assertThat(correction.getTo(), equalTo("A"));
+        assertThat(correction.getOriginal(), closeTo(3., 0.));
+        assertThat(correction.getCorrected(), closeTo(2., 0.));
+    }
+
+    @Test
+    public void missingDistancesAreFilledIn() {
+        DistanceData data = new DistanceData() {
+            @Override
+            public Set<String> getPlaces() {
+                return new LinkedHashSet<>(Arrays.asList("A", "B", "C"));
+            }
+
+            @Override
+            public Double getDistance(String fromPlace, String toPlace) {
+                return fromPlace.equals("B") || toPlace.equals("B") ? 1.5 : null;
+            }
+        };
+
+        Result result = new MetricClosure().close(data);
+
+        assertThat(result.getData().getDistance(0, 2), closeTo(3., 0.));
+        assertThat(Double.isNaN(result.getCorrections().get(0).getOriginal()), equalTo(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeDistancesAreRejected() {
+        new MetricClosure().close(new DistanceMatrixData(Arrays.asList("A", "B"), new double[] { -1. }));
+    }
+
+    @Test
+    public void repairedGameDistancesAreMetric() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            DistanceMatrixData data = new DistanceCsvLoader().load(is);
+            assertThat(new DistanceValidator(1e-9, 1).validate(data).isValid(), equalTo(false));
+
+            Result result = new MetricClosure().close(data);
+
+            assertThat(new DistanceValidator(1e-9, 1).validate(result.getData()).isValid(), equalTo(true));
+            for (Correction correction : result.getCorrections()) {
+                // the game rounds to one decimal, so no detour should be shorter by more than a few rounding steps
+                assertThat(correction.getOriginal() - correction.getCorrected(), lessThan(.5));
+            }
+            assertThat(result.getCorrections().size(), equalTo(187));
+        }
+    }
+
+    @Test
+    public void closureEqualsPlainFloydWarshall() {
+        int n = 150;
+        DistanceMatrixData data = DistanceGenerator.archipelagos(n, 5).withDecimals(0).generate();
+        double[][] expected = new double[n][n];
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < n; ++j) {
+                expected[i][j] = i == j ? 0. : data.getDistance(i, j);
+            }
+        }
+        for (int k = 0; k < n; ++k) {
+            for (int i = 0; i < n; ++i) {
+                for (int j = 0; j < n; ++j) {
+                    expected[i][j] = Math.min(expected[i][j], expected[i][k] + expected[k][j]);
+                }
+            }
+        }
+
+        Result result = new MetricClosure().close(data);
+
+        for (int i = 0; i < n; ++i) {
+            for (int j = 0; j < i; ++j) {
+                assertThat(result.getData().getDistance(i, j), closeTo(expected[i][j], 1e-9));
+            }
+        }
+    }
+
+    @Test
+    public void parallelClosureEqualsSequentialClosure() {
+        DistanceMatrixData data = DistanceGenerator.plane(300).generate();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        Result sequential = new MetricClosure().close(data);
+        Result parallel = new MetricClosure(pool).close(data);
+        pool.shutdown();
+
+        assertThat(parallel.getCorrections().size(), equalTo(sequential.getCorrections().size()));
+        for (int i = 0; i < data.size(); ++i) {
+            for (int j = 0; j < i; ++j) {
+                assertThat(parallel.getData().getDistance(i, j), equalTo(sequential.getData().getDistance(i, j)));
+            }
+        }
+    }
+
+    @Test
+    public void metricDistancesNeedNoCorrection() {
+        assertThat(new MetricClosure().close(DistanceGenerator.plane(200).unrounded().generate()).getCorrections()
+                .size(), equalTo(0));
+    }
+}
@@ -22,9 +22,10 @@ public class PortRoyaleTriangleInequalityTest {
     // distances are rounded to one digit, plus some small rounding error
     private static final double EPS = 0.1 + 0.0000001;
 
+    private static DistanceGraph graph;
+
     @Parameters
     public static Collection<Vertex[]> data() throws IOException {
-        DistanceGraph graph;
         try (InputStream is = PortRoyaleTriangleInequalityTest.class.getClassLoader()
                 .getResourceAsStream("port-royale-3-distances.csv")) {
             graph = new DistanceGraph(new DistanceCsvData(is));
@@ -56,9 +57,9 @@ public class PortRoyaleTriangleInequalityTest {
         this.vertex1 = vertex1;
         this.vertex2 = vertex2;
         this.vertex3 = vertex3;
-        this.edge12 = vertex1.getEdges().stream().filter(it -> it.getVertices().contains(vertex2)).findFirst().get();
-        this.edge13 = vertex1.getEdges().stream().filter(it -> it.getVertices().contains(vertex3)).findFirst().get();
-        this.edge23 = vertex2.getEdges().stream().filter(it -> it.getVertices().contains(vertex3)).findFirst().get();
+        this.edge12 = graph.getEdge(vertex1, vertex2);
+        this.edge13 = graph.getEdge(vertex1, vertex3);
+        this.edge23 = graph.getEdge(vertex2, vertex3);
     }
 
     @Test
@@ -0,0 +1,133 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.number.IsCloseTo.closeTo;
+import static org.hamcrest.number.OrderingComparison.lessThan;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.patchcode.graphs.weighted.GreedyMinimumDistanceSpanningTree;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+import ch.patchcode.port_royale_3.routes.RoutePlanner.Route;
+
+public class RoutePlannerTest {
+
+    private DistanceGraph graph;
+    private ExecutorService executor;
+
+    @Before
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            graph = new DistanceGraph(new DistanceCsvData(is));
+        }
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void plannedRouteVisitsAllPortsAndBeatsTheGreedyTour() throws Exception {
+        Route route = new RoutePlanner(graph, executor).plan(4, 1L, 1, TimeUnit.MINUTES);
+
+        assertThat(new HashSet<>(route.getTour()), equalTo(graph.getVertices()));
+        assertThat(route.getLength(), closeTo(graph.tourLength(route.getTour()), 1e-9));
+        double greedy = graph.tourLength(new TourImprover(graph)
+                .improve(graph.createTour(new GreedyMinimumDistanceSpanningTree<>(graph))));
+        assertThat(route.getLength(), lessThanOrEqualTo(greedy));
+    }
+
+    @Test
+    public void sameSeedPlansTheSameRoute() throws Exception {
+        RoutePlanner planner = new RoutePlanner(graph, executor);
+        Route first = planner.plan(3, 9L, 1, TimeUnit.MINUTES);
+        Route second = planner.plan(3, 9L, 1, TimeUnit.MINUTES);
+
+        assertThat(second.getTour(), equalTo(first.getTour()));
+        assertThat(second.getStrategy(), equalTo(first.getStrategy()));
+    }
+
+    @Test
+    public void startsRunningAtTheDeadlineReturnTheirToursSoFar() throws Exception {
+        // improves until interrupted, like the real improver on a large graph
+        TourImprover improver = new TourImprover(graph) {
+            @Override
+            public List<Vertex> improve(List<Vertex> tour) {
+                try {
+                    Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return tour;
+            }
+        };
+        long start = System.nanoTime();
+
+        Route route = new RoutePlanner(graph, executor, improver).plan(0, 1L, 50, TimeUnit.MILLISECONDS);
+
+        assertThat(System.nanoTime() - start, lessThan(TimeUnit.MILLISECONDS.toNanos(500)));
+        assertThat(new HashSet<>(route.getTour()), equalTo(graph.getVertices()));
+        assertThat(route.getLength(), closeTo(graph.tourLength(route.getTour()), 1e-9));
+    }
+
+    @Test
+    public void startsIgnoringTheInterruptDoNotDelayTheResult() throws Exception {
+        // like a start still building its first tour, which cannot be interrupted
+        CountDownLatch release = new CountDownLatch(1);
+        TourImprover improver = new TourImprover(graph) {
+            @Override
+            public List<Vertex> improve(List<Vertex> tour) {
+                while (true) {
+                    try {
+                        release.await();
+                        return tour;
+                    } catch (InterruptedException e) {
+                        // ignored
+                    }
+                }
+            }
+        };
+        long start = System.nanoTime();
+        try {
+            new RoutePlanner(graph, executor, improver).plan(0, 1L, 50, TimeUnit.MILLISECONDS);
+            fail("no start can have a tour yet");
+        } catch (TimeoutException e) {
+            assertThat(System.nanoTime() - start, lessThan(TimeUnit.MILLISECONDS.toNanos(500)));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void noStartWithinTheBudgetMeansNoRoute() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 2; ++i) {
+            executor.submit(() -> {
+                release.await();
+                return null;
+            });
+        }
+        try {
+            new RoutePlanner(graph, executor).plan(2, 1L, 10, TimeUnit.MILLISECONDS);
+        } finally {
+            release.countDown();
+        }
+    }
+}
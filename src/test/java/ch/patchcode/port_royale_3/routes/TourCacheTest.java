@@ -0,0 +1,136 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.patchcode.graphs.weighted.GreedyMinimumDistanceSpanningTree;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Subgraph;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+
+public class TourCacheTest {
+
+    private DistanceCsvData data;
+    private DistanceGraph graph;
+    private List<Vertex> ports;
+    private final AtomicInteger planned = new AtomicInteger();
+    private final Function<Subgraph, List<Vertex>> planner = subgraph -> {
+        planned.incrementAndGet();
+        return subgraph.createTour(new GreedyMinimumDistanceSpanningTree<>(subgraph));
+    };
+
+    @Before
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            data = new DistanceCsvData(is);
+        }
+        graph = new DistanceGraph(data);
+        ports = new ArrayList<>(graph.getVertices());
+        Collections.sort(ports);
+    }
+
+    @Test
+    public void equalSelectionsHitTheSameEntry() {
+        TourCache cache = new TourCache(graph, 10);
+        List<Vertex> selection = new ArrayList<>(ports.subList(0, 8));
+
+        List<Vertex> first = cache.getTour(graph.subgraph(selection), planner);
+        Collections.reverse(selection);
+        List<Vertex> second = cache.getTour(graph.subgraph(selection), planner);
+        cache.getTour(graph.subgraph(selection, selection.get(0)), planner);
+
+        assertThat(second, sameInstance(first));
+        assertThat(planned.get(), equalTo(2));
+        assertThat(cache.getHits(), equalTo(1L));
+        assertThat(cache.getMisses(), equalTo(2L));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() {
+        TourCache cache = new TourCache(graph, 2);
+        Subgraph a = graph.subgraph(ports.subList(0, 5));
+        Subgraph b = graph.subgraph(ports.subList(5, 10));
+        Subgraph c = graph.subgraph(ports.subList(10, 15));
+
+        cache.getTour(a, planner);
+        cache.getTour(b, planner);
+        cache.getTour(a, planner);
+        cache.getTour(c, planner);
+        cache.getTour(a, planner);
+        cache.getTour(b, planner);
+
+        assertThat(planned.get(), equalTo(4));
+        assertThat(cache.getEvictions(), equalTo(2L));
+        assertThat(cache.size(), equalTo(2));
+    }
+
+    @Test
+    public void cachedVerticesAreBounded() {
+        TourCache cache = new TourCache(graph, 100, 20);
+
+        cache.getTour(graph.subgraph(ports.subList(0, 10)), planner);
+        cache.getTour(graph.subgraph(ports.subList(10, 20)), planner);
+        cache.getTour(graph.subgraph(ports.subList(20, 25)), planner);
+
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.getEvictions(), equalTo(1L));
+    }
+
+    @Test
+    public void replacingTheGraphDropsAllEntries() {
+        TourCache cache = new TourCache(graph, 10);
+        cache.getTour(graph.subgraph(ports.subList(0, 8)), planner);
+
+        DistanceGraph changed = new DistanceGraph(data);
+        cache.replaceGraph(changed);
+
+        assertThat(cache.size(), equalTo(0));
+        List<Vertex> selection = new ArrayList<>(changed.getVertices());
+        Collections.sort(selection);
+        cache.getTour(changed.subgraph(selection.subList(0, 8)), planner);
+        assertThat(planned.get(), equalTo(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void subgraphsOfOtherGraphsAreRejected() {
+        new TourCache(graph, 10).getTour(new DistanceGraph(data).subgraph(Collections.emptyList()), planner);
+    }
+
+    @Test
+    public void concurrentQueriesKeepTheStatisticsConsistent() throws Exception {
+        TourCache cache = new TourCache(graph, 4);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int task = 0; task < 8; ++task) {
+            int offset = task;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 500; ++i) {
+                    int from = (offset + i) % 6;
+                    cache.getTour(graph.subgraph(ports.subList(from, from + 10)), planner);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(cache.getHits() + cache.getMisses(), equalTo(4000L));
+        assertThat(cache.getMisses(), equalTo((long) planned.get()));
+        assertThat(cache.size(), equalTo(4));
+    }
+}
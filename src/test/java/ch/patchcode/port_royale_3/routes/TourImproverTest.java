@@ -0,0 +1,89 @@
+package ch.patchcode.port_royale_3.routes;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsSame.sameInstance;
+import static org.hamcrest.number.OrderingComparison.lessThanOrEqualTo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ch.patchcode.graphs.weighted.BottomUpBipairingSpanningTree;
+import ch.patchcode.graphs.weighted.GreedyMinimumDistanceSpanningTree;
+import ch.patchcode.graphs.weighted.TopDownBisectionSpanningTree;
+import ch.patchcode.port_royale_3.routes.DistanceGraph.Vertex;
+import ch.patchcode.port_royale_3.routes.TourImprover.Neighbourhood;
+
+public class TourImproverTest {
+
+    private DistanceGraph graph;
+
+    @Before
+    public void setup() throws IOException {
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("port-royale-3-distances.csv")) {
+            graph = new DistanceGraph(new DistanceCsvData(is));
+        }
+    }
+
+    @Test
+    public void improvedSpanningTreeToursAreNoLongerAndVisitTheSamePorts() {
+        TourImprover improver = new TourImprover(graph);
+        List<List<Vertex>> tours = Arrays.asList(
+                graph.createTour(new GreedyMinimumDistanceSpanningTree<>(graph)),
+                graph.createTour(new TopDownBisectionSpanningTree<>(graph)),
+                graph.createTour(new BottomUpBipairingSpanningTree<>(graph)));
+        for (List<Vertex> tour : tours) {
+            for (Neighbourhood neighbourhood : Neighbourhood.values()) {
+                List<Vertex> improved = improver.improve(tour, neighbourhood);
+
+                assertThat(improved.size(), equalTo(tour.size()));
+                assertThat(new HashSet<>(improved), equalTo(new HashSet<>(tour)));
+                assertThat(improved.get(0), sameInstance(tour.get(0)));
+                assertThat(graph.tourLength(improved), lessThanOrEqualTo(graph.tourLength(tour)));
+            }
+        }
+    }
+
+    @Test
+    public void withAllNeighboursNoTwoOptMoveIsLeft() {
+        List<Vertex> tour = new ArrayList<>(graph.getVertices());
+        Collections.shuffle(tour, new Random(5));
+        TourImprover improver = new TourImprover(graph, tour.size() - 1);
+
+        for (Neighbourhood neighbourhood : Arrays.asList(Neighbourhood.TWO_OPT, Neighbourhood.OR_2OPT)) {
+            List<Vertex> improved = improver.improve(tour, neighbourhood);
+            int n = improved.size();
+            for (int i = 0; i < n; ++i) {
+                for (int j = i + 2; j < n; ++j) {
+                    Vertex a = improved.get(i), a2 = improved.get(i + 1);
+                    Vertex c = improved.get(j), c2 = improved.get((j + 1) % n);
+                    if (c2 == a) continue;
+                    double before = graph.getDistance(a, a2) + graph.getDistance(c, c2);
+                    double after = graph.getDistance(a, c) + graph.getDistance(a2, c2);
+                    assertThat(before, lessThanOrEqualTo(after + 1e-6));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void repeatedPortsAreRejected() {
+        Vertex vertex = graph.getVertices().iterator().next();
+        new TourImprover(graph).improve(Arrays.asList(vertex, vertex, vertex, vertex));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void toursOverAnotherGraphAreRejected() {
+        DistanceGraph other = new DistanceGraph(DistanceGenerator.plane(100).generate());
+        new TourImprover(graph).improve(new ArrayList<>(other.getVertices()));
+    }
+}
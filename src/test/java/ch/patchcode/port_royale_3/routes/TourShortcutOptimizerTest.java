@@ -2,7 +2,6 @@ package ch.patchcode.port_royale_3.routes;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -60,25 +59,6 @@ public class TourShortcutOptimizerTest {
     }
 
     private void report(Tree<Vertex> tree, List<Vertex> tour) {
-        System.out.println(String.format("total duration %.1f days from %-33s visiting %s", getDistance(tour), tree.getClass().getSimpleName(), tour.stream().map(it -> it.getName()).collect(Collectors.joining(", "))));
-    }
-
-    private double getDistance(List<Vertex> tour) {
-        Iterator<Vertex> iter = tour.iterator();
-        double sum = 0;
-        Vertex first = iter.next();
-        Vertex current = first;
-        Vertex previous;
-        while (iter.hasNext()) {
-            previous = current;
-            current = iter.next();
-            sum += getDistance(current, previous);
-        }
-        sum += getDistance(current, first);
-        return sum;
-    }
-
-    private Double getDistance(Vertex a, Vertex b) {
-        return a.getEdges().stream().filter(it -> it.getVertices().contains(b)).filter(it -> it.getVertices().contains(a)).findFirst().map(it -> it.getWeight()).get();
+        System.out.println(String.format("total duration %.1f days from %-33s visiting %s", graph.tourLength(tour), tree.getClass().getSimpleName(), tour.stream().map(it -> it.getName()).collect(Collectors.joining(", "))));
     }
 }